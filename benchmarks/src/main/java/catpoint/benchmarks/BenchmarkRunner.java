@@ -0,0 +1,52 @@
+package catpoint.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, and runs the selected benchmarks once
+ * for each thread count listed in the {@code catpoint.threads} system property, so scaling can be compared
+ * in one go:
+ *
+ * <pre>java -Dcatpoint.threads=1,2,4,8 -jar benchmarks/target/benchmarks.jar SecurityServiceBenchmark -rf json -rff results.json</pre>
+ *
+ * When a result file is given, each run writes its own copy with the thread count added to the name.
+ * Runs with more than one thread leave out the "basic" engine, which is not thread-safe.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String[] threadCounts = System.getProperty("catpoint.threads", "1").split(",");
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).threads(threads);
+            if (threads > 1) {
+                List<String> engines = new ArrayList<>(commandLine.getParameter("engine").hasValue()
+                        ? commandLine.getParameter("engine").get() : List.of("basic", "concurrent"));
+                engines.remove("basic");
+                if (engines.isEmpty()) {
+                    System.err.println("Skipping " + threads + " threads, the basic engine only runs single-threaded");
+                    continue;
+                }
+                options.param("engine", engines.toArray(new String[0]));
+            }
+            if (commandLine.getResult().hasValue()) {
+                options.result(withSuffix(commandLine.getResult().get(), "-t" + threads));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static String withSuffix(String file, String suffix) {
+        int dot = file.lastIndexOf('.');
+        return dot < 0 ? file + suffix : file.substring(0, dot) + suffix + file.substring(dot);
+    }
+}
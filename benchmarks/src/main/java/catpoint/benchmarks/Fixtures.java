@@ -0,0 +1,100 @@
+package catpoint.benchmarks;
+
+import catpoint.data.JournalSecurityRepositoryImpl;
+import catpoint.data.MappedSensorSecurityRepositoryImpl;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.service.ConcurrentSecurityService;
+import catpoint.service.SecurityService;
+import service.ImageServiceInterface;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Builds the sensors, repositories and services the benchmarks run against, picked by the names used
+ * in the benchmarks' {@code @Param} values.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates sensors whose names share a long common prefix, as real fleets tend to, so name
+     * comparisons have to look past the first few characters.
+     */
+    static List<Sensor> sensors(int count) {
+        List<Sensor> sensors = new ArrayList<>(count);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor(String.format("Building A sensor %06d", i), types[i % types.length]));
+        }
+        return sensors;
+    }
+
+    /**
+     * @param kind One of "sharded", "journal" or "mapped"
+     * @param directory Scratch directory for repositories that persist to disk
+     */
+    static SecurityRepository repository(String kind, Path directory) {
+        switch (kind) {
+            case "sharded" -> {
+                return new ShardedSecurityRepositoryImpl();
+            }
+            case "journal" -> {
+                return new JournalSecurityRepositoryImpl(directory);
+            }
+            case "mapped" -> {
+                return new MappedSensorSecurityRepositoryImpl(directory.resolve("sensors.dat"));
+            }
+            default -> throw new IllegalArgumentException("Unknown repository " + kind);
+        }
+    }
+
+    /**
+     * @param engine Either "basic" or "concurrent"
+     */
+    static SecurityService service(String engine, SecurityRepository repository, ImageServiceInterface imageService) {
+        switch (engine) {
+            case "basic" -> {
+                return new SecurityService(repository, imageService);
+            }
+            case "concurrent" -> {
+                return new ConcurrentSecurityService(repository, imageService);
+            }
+            default -> throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    static Path scratchDirectory() {
+        try {
+            return Files.createTempDirectory("catpoint-bench");
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Closes the repository if it holds files open, then deletes the scratch directory.
+     */
+    static void cleanUp(SecurityRepository repository, Path directory) throws IOException {
+        if (repository instanceof Closeable) {
+            ((Closeable) repository).close();
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package catpoint.benchmarks;
+
+import catpoint.data.CatpointGson;
+import catpoint.data.Sensor;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.data.service.FakeImageService;
+import catpoint.server.SecurityHttpServer;
+import catpoint.service.ConcurrentSecurityService;
+import catpoint.metrics.LatencyHistogram;
+import catpoint.service.SecurityService;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Closed-loop load test of the {@link SecurityHttpServer} on loopback. Each simulated client keeps exactly
+ * one request in flight and sends the next as soon as the answer arrives: 80% status reads, 15% sensor
+ * toggles and 5% arming changes, picked with a per-client seed so runs are repeatable.
+ *
+ * <pre>java -Dcatpoint.clients=2000 -Dcatpoint.seconds=20 -cp benchmarks/target/benchmarks.jar catpoint.benchmarks.HttpLoadTest</pre>
+ *
+ * Latency is measured by the clients from send to full response, after a warm-up of a quarter of the run,
+ * and printed with the p99 next to the server's own handling time.
+ */
+public final class HttpLoadTest {
+
+    private static final String[] ARMING = {"DISARMED", "ARMED_HOME", "ARMED_AWAY"};
+
+    private final int clients = Integer.getInteger("catpoint.clients", 2000);
+    private final long runNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("catpoint.seconds", 20));
+    private final int sensorCount = Integer.getInteger("catpoint.sensors", 100);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private HttpClient http;
+    private URI base;
+    private List<String> sensorIds;
+    private long recordFrom;
+    private long stopAt;
+
+    private HttpLoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new HttpLoadTest().run();
+    }
+
+    private void run() throws InterruptedException {
+        SecurityService securityService = new ConcurrentSecurityService(new ShardedSecurityRepositoryImpl(), new FakeImageService());
+        List<Sensor> sensors = Fixtures.sensors(sensorCount);
+        sensors.forEach(securityService::addSensor);
+        sensorIds = sensors.stream().map(s -> CatpointGson.compactUuid(s.getSensorId())).collect(Collectors.toList());
+
+        try (SecurityHttpServer server = new SecurityHttpServer(securityService,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            server.start();
+            base = URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+            http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(10)).build();
+
+            long start = System.nanoTime();
+            recordFrom = start + runNanos / 4;
+            stopAt = start + runNanos;
+            CountDownLatch finished = new CountDownLatch(clients);
+            for (int client = 0; client < clients; client++) {
+                sendNext(new Random(client), finished);
+            }
+            finished.await();
+
+            double seconds = (stopAt - recordFrom) / 1e9;
+            System.out.printf("%d clients, %s per request, %d sensors%n", clients,
+                    server.usesVirtualThreads() ? "virtual thread" : "pooled thread", sensorCount);
+            System.out.printf("throughput: %.0f requests/s, errors: %d%n", latency.getTotalCount() / seconds, errors.get());
+            System.out.printf("p99: %.2f ms%n", latency.getValueAtPercentile(99) / 1e6);
+            System.out.println("client latency: " + latency.summaryMicros());
+            System.out.println("server handling: " + server.getRequestLatency().summaryMicros());
+        }
+    }
+
+    private void sendNext(Random random, CountDownLatch finished) {
+        long sent = System.nanoTime();
+        if (sent >= stopAt) {
+            finished.countDown();
+            return;
+        }
+        http.sendAsync(nextRequest(random), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long now = System.nanoTime();
+            if (failure != null || response.statusCode() >= 400) {
+                errors.incrementAndGet();
+            } else if (sent >= recordFrom) {
+                latency.recordValue(now - sent);
+            }
+            sendNext(random, finished);
+        });
+    }
+
+    private HttpRequest nextRequest(Random random) {
+        int pick = random.nextInt(100);
+        if (pick < 80) {
+            return HttpRequest.newBuilder(base.resolve("/status")).GET().build();
+        } else if (pick < 95) {
+            String id = sensorIds.get(random.nextInt(sensorIds.size()));
+            return put("/sensors/" + id + "/active", "{\"active\":" + random.nextBoolean() + "}");
+        } else {
+            return put("/arming", "{\"armingStatus\":\"" + ARMING[random.nextInt(ARMING.length)] + "\"}");
+        }
+    }
+
+    private HttpRequest put(String path, String json) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+}
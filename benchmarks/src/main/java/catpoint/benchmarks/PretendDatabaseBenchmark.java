@@ -0,0 +1,62 @@
+package catpoint.benchmarks;
+
+import catpoint.data.PretendDatabaseSecurityRepositoryImpl;
+import catpoint.data.Sensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Cost of {@link PretendDatabaseSecurityRepositoryImpl#updateSensor(Sensor)}, which re-serializes the whole
+ * sensor list to user preferences on every call. Preferences values are capped at
+ * {@link Preferences#MAX_VALUE_LENGTH} characters, which this repository hits at around 60 sensors, so
+ * the fleet sizes stay below that.
+ *
+ * The forked JVM is pointed at its own preferences root so runs never touch the real application's data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.prefs.userRoot=target/jmh-prefs")
+public class PretendDatabaseBenchmark {
+
+    @Param({"1", "10", "50"})
+    int sensorCount;
+
+    private PretendDatabaseSecurityRepositoryImpl securityRepository;
+    private List<Sensor> sensors;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BackingStoreException {
+        Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class).clear();
+        securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+        sensors = Fixtures.sensors(sensorCount);
+        securityRepository.addSensors(sensors);
+    }
+
+    @Benchmark
+    public void updateSensor(ThreadCursor cursor) {
+        Sensor sensor = sensors.get(cursor.next(sensors.size()));
+        //the repository is only ever used from the event dispatch thread, so calls are serialized here too
+        synchronized (securityRepository) {
+            sensor.setActive(!sensor.getActive());
+            securityRepository.updateSensor(sensor);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package catpoint.benchmarks;
+
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.replication.ReplicatedSecurityRepository;
+import catpoint.replication.ReplicationNode;
+import catpoint.replication.ReplicationProtocol;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Measures replication throughput, lag and failover time with every follower in a JVM of its own. The leader
+ * runs in this JVM and flips sensors as fast as it can, or at {@code catpoint.rate} writes per second, while
+ * followers started as {@link ReplicationNode} processes replicate them over loopback.
+ *
+ * <pre>java -Dcatpoint.followers=2 -Dcatpoint.seconds=20 -cp benchmarks/target/benchmarks.jar catpoint.benchmarks.ReplicationLoadTest</pre>
+ *
+ * Lag is measured after a warm-up of a quarter of the run, both as time from a write to a follower confirming
+ * it and as the most changes any follower was behind. At the end the leader is closed and the time until a
+ * follower has taken over is printed, which is about twice {@code catpoint.electionMillis}, 500 by default.
+ */
+public final class ReplicationLoadTest {
+
+    private final int followerCount = Integer.getInteger("catpoint.followers", 2);
+    private final int sensorCount = Integer.getInteger("catpoint.sensors", 1000);
+    private final int rate = Integer.getInteger("catpoint.rate", 0);
+    private final long runNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("catpoint.seconds", 20));
+    private final long electionMillis = Long.getLong("catpoint.electionMillis", 500);
+
+    private volatile boolean writing = true;
+    private volatile long writes;
+
+    private ReplicationLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ReplicationLoadTest().run();
+    }
+
+    private void run() throws Exception {
+        List<InetSocketAddress> members = freeAddresses(followerCount + 1);
+        String ports = members.stream().map(address -> String.valueOf(address.getPort())).collect(Collectors.joining(","));
+        List<Process> followers = new ArrayList<>();
+        ReplicatedSecurityRepository leader = new ReplicatedSecurityRepository(new ShardedSecurityRepositoryImpl(), members, 0,
+                Duration.ofMillis(electionMillis), ReplicatedSecurityRepository.DEFAULT_LOG_CAPACITY);
+        try {
+            leader.start();
+            for (int rank = 1; rank <= followerCount; rank++) {
+                followers.add(startFollower(rank, ports));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while ((!leader.isLeader() || leader.getFollowerCount() < followerCount) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            if (leader.getFollowerCount() < followerCount) {
+                throw new IllegalStateException("Only " + leader.getFollowerCount() + " followers connected");
+            }
+
+            List<Sensor> sensors = Fixtures.sensors(sensorCount);
+            leader.addSensors(sensors);
+            leader.setArmingStatus(ArmingStatus.ARMED_HOME);
+            Thread writer = new Thread(() -> write(leader, sensors), "replication-writer");
+            writer.start();
+
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(runNanos / 4));
+            leader.getReplicationLag().reset();
+            long writesBefore = writes;
+            long snapshotsBefore = leader.getSnapshotsSent();
+            long maxLag = 0;
+            long start = System.nanoTime();
+            long end = start + runNanos - runNanos / 4;
+            while (System.nanoTime() < end) {
+                maxLag = Math.max(maxLag, leader.getMaxFollowerLag());
+                Thread.sleep(10);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long writesDuring = writes - writesBefore;
+            writing = false;
+            writer.join();
+
+            System.out.printf("%d followers, %d sensors, %s%n", followerCount, sensorCount, rate > 0 ? rate + " writes/s offered" : "unthrottled");
+            System.out.printf("leader: %.0f writes/s%n", writesDuring / seconds);
+            System.out.printf("write to follower confirmation: %s%n", leader.getReplicationLag().summaryMicros());
+            System.out.printf("most changes a follower was behind: %d (log keeps %d), snapshots sent: %d%n",
+                    maxLag, ReplicatedSecurityRepository.DEFAULT_LOG_CAPACITY, leader.getSnapshotsSent() - snapshotsBefore);
+
+            long closedAt = System.nanoTime();
+            leader.close();
+            long newTerm = -1;
+            int newLeader = -1;
+            while (newTerm < 0 && System.nanoTime() - closedAt < TimeUnit.SECONDS.toNanos(30)) {
+                for (int rank = 1; rank <= followerCount && newTerm < 0; rank++) {
+                    newTerm = ReplicationProtocol.probe(members.get(rank), 200);
+                    newLeader = rank;
+                }
+                Thread.sleep(5);
+            }
+            if (newTerm < 0) {
+                System.out.println("failover: no follower took over within 30 s");
+            } else {
+                System.out.printf("failover: node %d leads term %d after %d ms%n",
+                        newLeader, newTerm, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - closedAt));
+            }
+        } finally {
+            leader.close();
+            followers.forEach(Process::destroy);
+        }
+    }
+
+    private void write(ReplicatedSecurityRepository leader, List<Sensor> sensors) {
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        long next = System.nanoTime();
+        long count = 0;
+        while (writing) {
+            Sensor sensor = sensors.get((int) (count % sensors.size()));
+            sensor.setActive(!sensor.getActive());
+            leader.updateSensor(sensor);
+            writes = ++count;
+            if (intervalNanos > 0) {
+                next += intervalNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+    }
+
+    private Process startFollower(int rank, String ports) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-Dcatpoint.electionMillis=" + electionMillis, "-cp", System.getProperty("java.class.path"),
+                ReplicationNode.class.getName(), String.valueOf(rank), ports)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static List<InetSocketAddress> freeAddresses(int count) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                sockets.add(socket);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort()));
+            }
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return addresses;
+    }
+}
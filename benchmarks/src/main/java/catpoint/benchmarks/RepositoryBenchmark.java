@@ -0,0 +1,80 @@
+package catpoint.benchmarks;
+
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of storing sensor updates in each of the scalable repositories, one at a time and as a batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"100", "10000", "100000"})
+    int sensorCount;
+
+    @Param({"sharded", "journal", "mapped"})
+    String repository;
+
+    private Path directory;
+    private SecurityRepository securityRepository;
+    private List<Sensor> sensors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        directory = Fixtures.scratchDirectory();
+        securityRepository = Fixtures.repository(repository, directory);
+        sensors = Fixtures.sensors(sensorCount);
+        securityRepository.addSensors(sensors);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.cleanUp(securityRepository, directory);
+    }
+
+    @Benchmark
+    public void updateSensor(ThreadCursor cursor) {
+        Sensor sensor = sensors.get(cursor.next(sensors.size()));
+        sensor.setActive(!sensor.getActive());
+        securityRepository.updateSensor(sensor);
+    }
+
+    /**
+     * Stores a batch of {@value #BATCH_SIZE} consecutive sensors through the bulk call.
+     */
+    @Benchmark
+    public void updateSensors(ThreadCursor cursor) {
+        int from = cursor.next(Math.max(1, sensors.size() - BATCH_SIZE));
+        List<Sensor> batch = sensors.subList(from, Math.min(sensors.size(), from + BATCH_SIZE));
+        boolean active = cursor.toggle();
+        for (Sensor sensor : batch) {
+            sensor.setActive(active);
+        }
+        securityRepository.updateSensors(batch);
+    }
+}
@@ -0,0 +1,274 @@
+package catpoint.benchmarks;
+
+import catpoint.application.StatusListener;
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.metrics.LatencyHistogram;
+import catpoint.service.SecurityService;
+import catpoint.service.TaskThreads;
+import service.DelayedFakeImageService;
+import service.ImageServiceInterface;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link SecurityService} with a synthetic, seeded workload and measures how long each kind of event
+ * takes to reach {@link StatusListener#notify}. Three sources run side by side, each at a fixed rate:
+ * <ul>
+ *     <li>sensor flapping: {@code catpoint.flapRate} activation changes per second over {@code catpoint.sensors}
+ *     sensors, spread over {@code catpoint.threads} threads that each own a slice of the sensors. Both the sensor
+ *     and the state it is set to are drawn at random, so what is offered doesn't depend on arming changes
+ *     resetting sensors in between</li>
+ *     <li>arming changes: {@code catpoint.armingRate} per second, picked at random</li>
+ *     <li>cameras: {@code catpoint.cameras} threads each submitting {@code catpoint.imageRate} images per second,
+ *     each camera with a {@link DelayedFakeImageService} of its own that takes {@code catpoint.detectMillis} per
+ *     detection</li>
+ * </ul>
+ *
+ * <pre>java -Dcatpoint.sensors=10000 -Dcatpoint.cameras=100 -Dcatpoint.seed=42 -cp benchmarks/target/benchmarks.jar catpoint.benchmarks.SecurityLoadGenerator</pre>
+ *
+ * Every source draws from its own {@link Random} derived from {@code catpoint.seed}, so two runs with the same
+ * seed and settings offer the same events from each source. Only how the sources interleave is left to the scheduler.
+ *
+ * Latencies start at the time an event was scheduled rather than when it was sent, so an event held up behind a
+ * slow one counts its wait. Both the call itself and the first alarm notification it causes are recorded, after a
+ * warm-up of a quarter of the run. Notifications are attributed to events on the thread that raises them, which
+ * is the caller's with the "basic" and "concurrent" engines, picked with {@code catpoint.engine}; other engines
+ * are refused, since their notifications couldn't be attributed. The basic engine is not thread-safe, so it is
+ * refused unless a single source thread runs, for example with {@code -Dcatpoint.threads=1 -Dcatpoint.cameras=0
+ * -Dcatpoint.armingRate=0}. The concurrent engine only notifies when the alarm status changes, so far fewer of its
+ * events show up as notified.
+ */
+public final class SecurityLoadGenerator {
+
+    private enum Source { SENSOR, ARMING, IMAGE }
+
+    private static final ArmingStatus[] ARMING = ArmingStatus.values();
+    private static final ThreadLocal<EventContext> CURRENT_EVENT = ThreadLocal.withInitial(EventContext::new);
+    //engines that notify on the caller's thread, where CURRENT_EVENT can tie a notification to its event
+    private static final List<String> CALLER_THREAD_ENGINES = List.of("basic", "concurrent");
+
+    private final long seed = Long.getLong("catpoint.seed", 42);
+    private final String engine = System.getProperty("catpoint.engine", "concurrent");
+    private final String repositoryKind = System.getProperty("catpoint.repository", "sharded");
+    private final int sensorCount = Integer.getInteger("catpoint.sensors", 10_000);
+    private final int flapRate = Integer.getInteger("catpoint.flapRate", 20_000);
+    private final int threads = Integer.getInteger("catpoint.threads", 4);
+    private final double armingRate = Double.parseDouble(System.getProperty("catpoint.armingRate", "1"));
+    private final int cameras = Integer.getInteger("catpoint.cameras", 100);
+    private final double imageRate = Double.parseDouble(System.getProperty("catpoint.imageRate", "2"));
+    private final long detectMillis = Long.getLong("catpoint.detectMillis", 50);
+    private final long runNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("catpoint.seconds", 20));
+
+    private final Stats[] stats = {new Stats(), new Stats(), new Stats()};
+    private volatile boolean running = true;
+
+    private SecurityLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new SecurityLoadGenerator().run();
+    }
+
+    private void run() throws InterruptedException, IOException {
+        if (!CALLER_THREAD_ENGINES.contains(engine)) {
+            throw new IllegalArgumentException("Engine " + engine + " doesn't notify on the caller's thread, use one of "
+                    + CALLER_THREAD_ENGINES);
+        }
+        int sourceThreads = (flapRate > 0 ? threads : 0) + (armingRate > 0 ? 1 : 0) + (imageRate > 0 ? cameras : 0);
+        if (engine.equals("basic") && sourceThreads != 1) {
+            throw new IllegalArgumentException("The basic engine is not thread-safe, but " + sourceThreads
+                    + " source threads would drive it; run a single source");
+        }
+        Path directory = Fixtures.scratchDirectory();
+        SecurityRepository repository = Fixtures.repository(repositoryKind, directory);
+        try {
+            Random setup = new Random(seed);
+            PerCameraImageService cameraDetectors = new PerCameraImageService();
+            SecurityService securityService = Fixtures.service(engine, repository, cameraDetectors);
+            securityService.addStatusListener(new LatencyListener());
+            List<Sensor> sensors = Fixtures.sensors(sensorCount);
+            repository.addSensors(sensors);
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+            ExecutorService workers = TaskThreads.newThreadPerTaskExecutor("catpoint-load");
+            for (int t = 0; t < threads; t++) {
+                List<Sensor> slice = new ArrayList<>();
+                for (int i = t; i < sensors.size(); i += threads) {
+                    slice.add(sensors.get(i));
+                }
+                Random random = new Random(setup.nextLong());
+                workers.execute(() -> drive(Source.SENSOR, (double) flapRate / threads, random, () -> {
+                    Sensor sensor = slice.get(random.nextInt(slice.size()));
+                    securityService.changeSensorActivationStatus(sensor, random.nextBoolean());
+                }));
+            }
+            Random armingRandom = new Random(setup.nextLong());
+            workers.execute(() -> drive(Source.ARMING, armingRate, armingRandom,
+                    () -> securityService.setArmingStatus(ARMING[armingRandom.nextInt(ARMING.length)])));
+            for (int c = 0; c < cameras; c++) {
+                Random random = new Random(setup.nextLong());
+                DelayedFakeImageService detector = new DelayedFakeImageService(detectMillis, new Random(setup.nextLong()));
+                BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+                workers.execute(() -> {
+                    cameraDetectors.bind(detector);
+                    drive(Source.IMAGE, imageRate, random, () -> securityService.processImage(frame));
+                });
+            }
+
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(runNanos / 4));
+            for (Stats s : stats) {
+                s.reset();
+            }
+            long start = System.nanoTime();
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(runNanos - runNanos / 4));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            running = false;
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+
+            System.out.printf("seed %d, %s engine on %s repository, %d sensors, %d cameras%n",
+                    seed, engine, repositoryKind, sensorCount, cameras);
+            report(Source.SENSOR, flapRate, seconds);
+            report(Source.ARMING, armingRate, seconds);
+            report(Source.IMAGE, cameras * imageRate, seconds);
+        } finally {
+            Fixtures.cleanUp(repository, directory);
+        }
+    }
+
+    /**
+     * Fires events at a fixed rate until the run ends, starting at a random offset so sources with the same rate
+     * don't fire in lockstep.
+     */
+    private void drive(Source source, double perSecond, Random random, Runnable event) {
+        if (perSecond <= 0) {
+            return;
+        }
+        long intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        long next = System.nanoTime() + (long) (random.nextDouble() * intervalNanos);
+        EventContext context = CURRENT_EVENT.get();
+        Stats sourceStats = stats[source.ordinal()];
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            context.begin(sourceStats, next);
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                sourceStats.failures.incrementAndGet();
+            }
+            context.end();
+            sourceStats.events.incrementAndGet();
+            sourceStats.call.recordValue(System.nanoTime() - next);
+            next += intervalNanos;
+        }
+    }
+
+    private void report(Source source, double offeredPerSecond, double seconds) {
+        Stats s = stats[source.ordinal()];
+        System.out.printf("%s: offered %.1f/s, done %.1f/s, %d notified, %d failed%n", source.name().toLowerCase(Locale.ROOT),
+                offeredPerSecond, s.events.get() / seconds, s.notify.getTotalCount(), s.failures.get());
+        System.out.printf("  call:   %s%n", s.call.summaryMicros());
+        System.out.printf("  notify: %s%n", s.notify.summaryMicros());
+    }
+
+    /**
+     * Times the first alarm notification each event causes.
+     */
+    private static final class LatencyListener implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+            CURRENT_EVENT.get().notified();
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+
+        @Override
+        public void ArmingNotify(ArmingStatus status) {
+        }
+    }
+
+    /**
+     * Sends each camera's frames to that camera's own detector, so the verdicts a camera gets only depend on
+     * its seed and not on how the cameras' calls interleave. Both engines detect on the calling thread, which
+     * is the camera's.
+     */
+    private static final class PerCameraImageService implements ImageServiceInterface {
+        private final ThreadLocal<ImageServiceInterface> detector = new ThreadLocal<>();
+
+        void bind(ImageServiceInterface cameraDetector) {
+            detector.set(cameraDetector);
+        }
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            ImageServiceInterface cameraDetector = detector.get();
+            if (cameraDetector == null) {
+                throw new IllegalStateException("Images must be submitted from a camera thread");
+            }
+            return cameraDetector.imageContainsCat(image, confidenceThreshhold);
+        }
+    }
+
+    /**
+     * The event the current thread is handling, if any.
+     */
+    private static final class EventContext {
+        private Stats stats;
+        private long scheduledNanos;
+        private boolean notified;
+
+        void begin(Stats stats, long scheduledNanos) {
+            this.stats = stats;
+            this.scheduledNanos = scheduledNanos;
+            this.notified = false;
+        }
+
+        void notified() {
+            if (stats != null && !notified) {
+                notified = true;
+                stats.notify.recordValue(System.nanoTime() - scheduledNanos);
+            }
+        }
+
+        void end() {
+            stats = null;
+        }
+    }
+
+    private static final class Stats {
+        private final LatencyHistogram call = new LatencyHistogram();
+        private final LatencyHistogram notify = new LatencyHistogram();
+        private final AtomicLong events = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        void reset() {
+            call.reset();
+            notify.reset();
+            events.set(0);
+            failures.set(0);
+        }
+    }
+}
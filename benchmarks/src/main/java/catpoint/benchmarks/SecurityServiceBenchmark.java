@@ -0,0 +1,93 @@
+package catpoint.benchmarks;
+
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link SecurityService} transitions for each engine and repository, by fleet size.
+ *
+ * {@code catDetected} is driven through {@code processImage} with an image service that never sees a
+ * cat, which takes the armed, no-cat branch that has to find out whether any sensor is active. Every
+ * sensor is left inactive, so that check can't stop early, and nothing else is called in the loop.
+ *
+ * The "basic" engine is not thread-safe; {@link BenchmarkRunner} only runs it single-threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int sensorCount;
+
+    @Param({"basic", "concurrent"})
+    String engine;
+
+    @Param({"sharded", "journal"})
+    String repository;
+
+    private final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private Path directory;
+    private SecurityRepository securityRepository;
+    private SecurityService securityService;
+    private Sensor[] sensors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        directory = Fixtures.scratchDirectory();
+        securityRepository = Fixtures.repository(repository, directory);
+        securityService = Fixtures.service(engine, securityRepository, (image, threshold) -> false);
+        List<Sensor> fleet = Fixtures.sensors(sensorCount);
+        securityRepository.addSensors(fleet);
+        sensors = fleet.toArray(new Sensor[0]);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.cleanUp(securityRepository, directory);
+    }
+
+    @Benchmark
+    public void changeSensorActivationStatus(ThreadCursor cursor) {
+        Sensor sensor = sensors[cursor.next(sensors.length)];
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    /**
+     * Switches between the two armed states, so every call also resets all sensors.
+     */
+    @Benchmark
+    public void setArmingStatus(ThreadCursor cursor) {
+        securityService.setArmingStatus(cursor.toggle() ? ArmingStatus.ARMED_AWAY : ArmingStatus.ARMED_HOME);
+    }
+
+    @Benchmark
+    public void catDetected() {
+        securityService.processImage(image);
+    }
+}
@@ -0,0 +1,63 @@
+package catpoint.benchmarks;
+
+import catpoint.data.Sensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Sensor#compareTo(Sensor)} on its own and as it is used by the TreeSet-based repositories,
+ * where updating a sensor is a remove and an add, each a walk down the tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorCompareBenchmark {
+
+    @Param({"1000", "100000"})
+    int sensorCount;
+
+    private Sensor[] sensors;
+    private TreeSet<Sensor> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Sensor> fleet = Fixtures.sensors(sensorCount);
+        sensors = fleet.toArray(new Sensor[0]);
+        tree = new TreeSet<>(fleet);
+    }
+
+    @Benchmark
+    public int compareTo(ThreadCursor cursor) {
+        return sensors[cursor.next(sensors.length)].compareTo(sensors[cursor.next(sensors.length)]);
+    }
+
+    /**
+     * Re-sorts one sensor the way {@code updateSensor} does. TreeSet is not thread-safe, so with more than
+     * one thread this also measures contention on the set, as the repositories' own locking would.
+     */
+    @Benchmark
+    public boolean treeSetRemoveAdd(ThreadCursor cursor) {
+        Sensor sensor = sensors[cursor.next(sensors.length)];
+        synchronized (tree) {
+            tree.remove(sensor);
+            return tree.add(sensor);
+        }
+    }
+}
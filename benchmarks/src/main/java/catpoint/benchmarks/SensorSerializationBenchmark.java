@@ -0,0 +1,77 @@
+package catpoint.benchmarks;
+
+import catpoint.data.CatpointGson;
+import catpoint.data.Sensor;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading the sensor list the way the preferences repository does, with the hand-written
+ * adapters in {@link CatpointGson} against Gson's reflective encoding of the same sensors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorSerializationBenchmark {
+
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Param({"50", "1000"})
+    int sensorCount;
+
+    private final Gson reflective = new Gson();
+    private List<Sensor> sensors;
+    private String reflectiveJson;
+    private String adapterJson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sensors = Fixtures.sensors(sensorCount);
+        reflectiveJson = reflective.toJson(sensors);
+        adapterJson = CatpointGson.sensorsToJson(sensors);
+    }
+
+    @Benchmark
+    public String writeReflective() {
+        return reflective.toJson(sensors);
+    }
+
+    @Benchmark
+    public String writeAdapters() {
+        return CatpointGson.sensorsToJson(sensors);
+    }
+
+    @Benchmark
+    public Set<Sensor> readReflective() {
+        return reflective.fromJson(reflectiveJson, SENSOR_SET);
+    }
+
+    /**
+     * Also sorts the sensors into the TreeSet the repository keeps, which the reflective read leaves out.
+     */
+    @Benchmark
+    public Set<Sensor> readAdapters() {
+        return CatpointGson.sensorsFromJson(adapterJson);
+    }
+}
@@ -0,0 +1,128 @@
+package catpoint.benchmarks;
+
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.data.service.FakeImageService;
+import catpoint.gateway.SensorEventProtocol;
+import catpoint.gateway.TelemetryGateway;
+import catpoint.service.ConcurrentSecurityService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many sensor events per second the {@link TelemetryGateway} sustains on loopback. Each sender
+ * thread owns a slice of the sensors and streams batches of events that flip them on and off, over TCP by
+ * default or UDP with {@code -Dcatpoint.transport=udp}. The system is armed, so events go through the alarm logic.
+ *
+ * <pre>java -Dcatpoint.connections=4 -Dcatpoint.seconds=20 -cp benchmarks/target/benchmarks.jar catpoint.benchmarks.TelemetryLoadGenerator</pre>
+ *
+ * Rates are measured after a warm-up of a quarter of the run. Over UDP, events sent but never accounted for
+ * by the gateway were dropped by the socket buffers.
+ */
+public final class TelemetryLoadGenerator {
+
+    private static final int FRAMES_PER_BATCH = 512;
+    //stay well under the usual loopback datagram limit
+    private static final int FRAMES_PER_DATAGRAM = 32;
+
+    private final int connections = Integer.getInteger("catpoint.connections", 4);
+    private final int sensorCount = Integer.getInteger("catpoint.sensors", 1000);
+    private final long runNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("catpoint.seconds", 20));
+    private final boolean udp = "udp".equals(System.getProperty("catpoint.transport", "tcp"));
+
+    private final AtomicLong sent = new AtomicLong();
+    private volatile boolean sending = true;
+
+    private TelemetryLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new TelemetryLoadGenerator().run();
+    }
+
+    private void run() throws InterruptedException {
+        ConcurrentSecurityService securityService = new ConcurrentSecurityService(new ShardedSecurityRepositoryImpl(), new FakeImageService());
+        List<Sensor> sensors = Fixtures.sensors(sensorCount);
+        sensors.forEach(securityService::addSensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (TelemetryGateway gateway = new TelemetryGateway(securityService, loopback, udp ? loopback : null)) {
+            gateway.start();
+            List<Thread> senders = new ArrayList<>();
+            for (int c = 0; c < connections; c++) {
+                List<Sensor> slice = sensors.subList(c * sensorCount / connections, (c + 1) * sensorCount / connections);
+                Thread sender = new Thread(() -> send(gateway, slice), "telemetry-sender-" + senders.size());
+                sender.start();
+                senders.add(sender);
+            }
+
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(runNanos / 4));
+            long sentBefore = sent.get();
+            long appliedBefore = gateway.getEventsApplied();
+            long start = System.nanoTime();
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(runNanos - runNanos / 4));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long sentDuring = sent.get() - sentBefore;
+            long appliedDuring = gateway.getEventsApplied() - appliedBefore;
+            sending = false;
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            Thread.sleep(500);
+
+            System.out.printf("%s, %d connections, %d sensors%n", udp ? "UDP" : "TCP", connections, sensorCount);
+            System.out.printf("sent: %.0f events/s, applied: %.0f events/s%n", sentDuring / seconds, appliedDuring / seconds);
+            long accounted = gateway.getEventsApplied() + gateway.getStaleEvents() + gateway.getUnknownSensorEvents() + gateway.getFailedEvents();
+            System.out.printf("total sent %d, applied %d, stale %d, unknown %d, malformed %d, failed %d, dropped %d%n",
+                    sent.get(), gateway.getEventsApplied(), gateway.getStaleEvents(), gateway.getUnknownSensorEvents(),
+                    gateway.getMalformedFrames(), gateway.getFailedEvents(), sent.get() - accounted);
+        }
+    }
+
+    private void send(TelemetryGateway gateway, List<Sensor> sensors) {
+        long[] most = new long[sensors.size()];
+        long[] least = new long[sensors.size()];
+        for (int i = 0; i < most.length; i++) {
+            most[i] = sensors.get(i).getSensorId().getMostSignificantBits();
+            least[i] = sensors.get(i).getSensorId().getLeastSignificantBits();
+        }
+        int framesPerWrite = udp ? FRAMES_PER_DATAGRAM : FRAMES_PER_BATCH;
+        ByteBuffer batch = ByteBuffer.allocateDirect(framesPerWrite * SensorEventProtocol.SENSOR_EVENT_FRAME_BYTES);
+        long sequence = 0;
+        InetSocketAddress udpAddress = gateway.getUdpAddress();
+        try (SocketChannel tcp = udp ? null : SocketChannel.open(gateway.getTcpAddress());
+             DatagramChannel datagrams = udp ? DatagramChannel.open() : null) {
+            while (sending) {
+                batch.clear();
+                for (int i = 0; i < framesPerWrite; i++, sequence++) {
+                    int sensor = (int) (sequence % most.length);
+                    //the sequence doubles as timestamp so every sensor sees strictly increasing events
+                    SensorEventProtocol.writeSensorEvent(batch, most[sensor], least[sensor], (sequence / most.length) % 2 == 0, sequence);
+                }
+                batch.flip();
+                if (udp) {
+                    datagrams.send(batch, udpAddress);
+                } else {
+                    while (batch.hasRemaining()) {
+                        tcp.write(batch);
+                    }
+                }
+                sent.addAndGet(framesPerWrite);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package catpoint.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread position for walking over the sensors, so each benchmark thread touches its own
+ * sequence of sensors without sharing a counter with the others.
+ */
+@State(Scope.Thread)
+public class ThreadCursor {
+
+    private long position = System.identityHashCode(Thread.currentThread());
+    private boolean flag;
+
+    /**
+     * @return The next index below {@code bound}, stepping by a large odd number so consecutive calls
+     * land far apart
+     */
+    int next(int bound) {
+        position += 0x9E3779B97F4A7C15L;
+        return (int) ((position >>> 33) % bound);
+    }
+
+    boolean toggle() {
+        flag = !flag;
+        return flag;
+    }
+}
@@ -0,0 +1,24 @@
+package service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking counterpart of {@link ImageServiceInterface}. Implementations return immediately and
+ * complete the future once the image has been analyzed.
+ */
+public interface AsyncImageServiceInterface {
+    CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Adapts a blocking image service by running each call on the given executor.
+     */
+    static AsyncImageServiceInterface fromBlocking(ImageServiceInterface imageService, Executor executor) {
+        if (imageService instanceof AsyncImageServiceInterface) {
+            return (AsyncImageServiceInterface) imageService;
+        }
+        return (image, confidenceThreshhold) -> CompletableFuture.supplyAsync(
+                () -> imageService.imageContainsCat(image, confidenceThreshhold), executor);
+    }
+}
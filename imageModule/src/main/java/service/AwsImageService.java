@@ -12,9 +12,7 @@ import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -32,6 +30,9 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *    Optionally, the upload can be tuned with
+ *      image.jpeg.quality=[JPEG quality between 0 and 1, default 0.85]
+ *      image.max.dimension=[longest side in pixels frames are scaled down to, default 1280]
  */
 public class AwsImageService implements ImageServiceInterface {
 
@@ -40,18 +41,24 @@ public class AwsImageService implements ImageServiceInterface {
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
 
+    private final JpegFrameEncoder encoder;
+
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
             props.load(is);
         } catch (IOException ioe ) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+            encoder = new JpegFrameEncoder();
             return;
         }
 
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        encoder = new JpegFrameEncoder(
+                Float.parseFloat(props.getProperty("image.jpeg.quality", String.valueOf(JpegFrameEncoder.DEFAULT_QUALITY))),
+                Integer.parseInt(props.getProperty("image.max.dimension", String.valueOf(JpegFrameEncoder.DEFAULT_MAX_DIMENSION))));
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
         rekognitionClient = RekognitionClient.builder()
@@ -69,9 +76,9 @@ public class AwsImageService implements ImageServiceInterface {
     @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            //the encoder hands back an array nobody else holds, so the SDK may wrap it without copying
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(encoder.encode(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
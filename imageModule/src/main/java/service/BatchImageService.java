@@ -0,0 +1,31 @@
+package service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detector that analyzes several images in one call, letting backends amortize per-call overhead
+ * such as network round trips or model invocation.
+ */
+public interface BatchImageService {
+    /**
+     * @param images Images to scan
+     * @param confidenceThreshhold Minimum confidence to consider for cat, applied to every image in the batch
+     * @return One verdict per image, in the same order as {@code images}
+     */
+    List<Boolean> imagesContainCat(List<BufferedImage> images, float confidenceThreshhold);
+
+    /**
+     * Adapts a single-image service by scanning the batch one image at a time.
+     */
+    static BatchImageService sequential(ImageServiceInterface imageService) {
+        return (images, confidenceThreshhold) -> {
+            List<Boolean> verdicts = new ArrayList<>(images.size());
+            for (BufferedImage image : images) {
+                verdicts.add(imageService.imageContainsCat(image, confidenceThreshhold));
+            }
+            return verdicts;
+        };
+    }
+}
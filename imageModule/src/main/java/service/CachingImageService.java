@@ -0,0 +1,244 @@
+package service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image service decorator that remembers verdicts for frames it has already seen. Frames are keyed on
+ * their dimensions, a 128-bit hash of their pixel data made of two independent 64-bit hashes, and the
+ * confidence threshold, so an identical frame that is resubmitted is answered from memory instead of
+ * paying for another detection.
+ *
+ * The cache holds at most {@code maxEntries} verdicts, evicting the least recently used first, and
+ * verdicts expire after {@code timeToLive}. Concurrent requests for the same frame share a single
+ * in-flight detection.
+ */
+public class CachingImageService implements ImageServiceInterface, AsyncImageServiceInterface {
+
+    private final ImageServiceInterface delegate;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final Map<FrameKey, CachedVerdict> cache;
+    private final Map<FrameKey, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedDetections = new AtomicLong();
+
+    public CachingImageService(ImageServiceInterface delegate, int maxEntries, Duration timeToLive) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FrameKey, CachedVerdict> eldest) {
+                return size() > CachingImageService.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(null, confidenceThreshhold);
+        }
+        FrameKey key = new FrameKey(image, confidenceThreshhold);
+        Boolean cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Boolean> detection = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(key, detection);
+        if (existing != null) {
+            sharedDetections.incrementAndGet();
+            return join(existing);
+        }
+        cached = claimedLookup(key, detection);
+        if (cached != null) {
+            return cached;
+        }
+        misses.incrementAndGet();
+        try {
+            boolean verdict = delegate.imageContainsCat(image, confidenceThreshhold);
+            store(key, verdict);
+            detection.complete(verdict);
+            return verdict;
+        } catch (RuntimeException e) {
+            detection.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, detection);
+        }
+    }
+
+    /**
+     * Asynchronous lookup. Misses are sent to the delegate's asynchronous variant when it has one,
+     * otherwise the delegate is called on the caller's thread.
+     */
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        if (!(delegate instanceof AsyncImageServiceInterface) || image == null) {
+            try {
+                return CompletableFuture.completedFuture(imageContainsCat(image, confidenceThreshhold));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        FrameKey key = new FrameKey(image, confidenceThreshhold);
+        Boolean cached = lookup(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Boolean> detection = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(key, detection);
+        if (existing != null) {
+            sharedDetections.incrementAndGet();
+            return existing.copy();
+        }
+        cached = claimedLookup(key, detection);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Boolean> source;
+        try {
+            source = ((AsyncImageServiceInterface) delegate).imageContainsCatAsync(image, confidenceThreshhold);
+        } catch (RuntimeException e) {
+            source = CompletableFuture.failedFuture(e);
+        }
+        source.whenComplete((verdict, error) -> {
+            if (error == null) {
+                store(key, verdict);
+                detection.complete(verdict);
+            } else {
+                detection.completeExceptionally(error);
+            }
+            inFlight.remove(key, detection);
+        });
+        return detection.copy();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of requests that joined a detection already in flight for the same frame
+     */
+    public long getSharedDetectionCount() {
+        return sharedDetections.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private Boolean lookup(FrameKey key) {
+        synchronized (cache) {
+            CachedVerdict cached = cache.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.storedAtNanos > timeToLiveNanos) {
+                cache.remove(key);
+                return null;
+            }
+            hits.incrementAndGet();
+            return cached.verdict;
+        }
+    }
+
+    /**
+     * Looks the frame up again once this caller owns its in-flight slot. A detection that finished between
+     * the first lookup and claiming the slot has stored its verdict before giving the slot up, so this
+     * finds it instead of running the same detection twice.
+     */
+    private Boolean claimedLookup(FrameKey key, CompletableFuture<Boolean> detection) {
+        Boolean cached = lookup(key);
+        if (cached != null) {
+            detection.complete(cached);
+            inFlight.remove(key, detection);
+        }
+        return cached;
+    }
+
+    private void store(FrameKey key, boolean verdict) {
+        synchronized (cache) {
+            cache.put(key, new CachedVerdict(verdict, System.nanoTime()));
+        }
+    }
+
+    private static boolean join(CompletableFuture<Boolean> detection) {
+        try {
+            return detection.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class CachedVerdict {
+        private final boolean verdict;
+        private final long storedAtNanos;
+
+        private CachedVerdict(boolean verdict, long storedAtNanos) {
+            this.verdict = verdict;
+            this.storedAtNanos = storedAtNanos;
+        }
+    }
+
+    private static final class FrameKey {
+        private final long pixelHash;
+        private final long secondPixelHash;
+        private final int width;
+        private final int height;
+        private final int thresholdBits;
+
+        private FrameKey(BufferedImage image, float confidenceThreshhold) {
+            long[] digest = ImageHashes.pixelDigest(image);
+            this.pixelHash = digest[0];
+            this.secondPixelHash = digest[1];
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            this.thresholdBits = Float.floatToIntBits(confidenceThreshhold);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FrameKey frameKey = (FrameKey) o;
+            return pixelHash == frameKey.pixelHash && secondPixelHash == frameKey.secondPixelHash && width == frameKey.width
+                    && height == frameKey.height && thresholdBits == frameKey.thresholdBits;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pixelHash, secondPixelHash, width, height, thresholdBits);
+        }
+    }
+}
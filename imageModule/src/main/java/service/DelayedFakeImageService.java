@@ -0,0 +1,52 @@
+package service;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stub image service that answers like {@link FakeImageService} but only after an artificial delay,
+ * to stand in for a remote detector when measuring throughput. The asynchronous variant schedules its
+ * answer on a timer rather than blocking a thread for the length of the delay.
+ */
+public class DelayedFakeImageService implements ImageServiceInterface, AsyncImageServiceInterface {
+    private final Random r;
+    private final long delayMillis;
+
+    public DelayedFakeImageService(long delayMillis) {
+        this(delayMillis, new Random());
+    }
+
+    /**
+     * @param delayMillis Time each detection takes
+     * @param random Source of the verdicts, seed it for reproducible runs
+     */
+    public DelayedFakeImageService(long delayMillis, Random random) {
+        this.delayMillis = delayMillis;
+        this.r = random;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return nextVerdict();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        boolean verdict = nextVerdict();
+        return CompletableFuture.supplyAsync(() -> verdict,
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private boolean nextVerdict() {
+        synchronized (r) {
+            return r.nextBoolean();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Image service decorator that skips detection for frames which look the same as the last frame that
+ * was actually analyzed. A perceptual hash of every frame is compared with the hash of that reference
+ * frame; if they are at most {@code maxDistance} bits apart the previous verdict is reused. A fixed
+ * camera watching a static scene therefore only pays for a detection when something in view changes.
+ *
+ * There is one reference frame per instance, so an instance should sit in front of a single camera;
+ * frames from different cameras would otherwise be compared with each other. Even then a reused verdict
+ * is only as fresh as the frame it came from, so a reference is reused at most {@code maxReuses} times
+ * and for at most {@code maxReuseAge}, after which the next frame is analyzed again and becomes the new
+ * reference. That bounds how long a slow change, or a verdict that was wrong, can be carried forward.
+ */
+public class FrameDeduplicatingImageService implements ImageServiceInterface, AsyncImageServiceInterface {
+
+    /**
+     * Perceptual hash used to compare frames.
+     */
+    public enum HashAlgorithm {
+        DIFFERENCE(ImageHashes::differenceHash),
+        AVERAGE(ImageHashes::averageHash);
+
+        private final ToLongFunction<BufferedImage> function;
+
+        HashAlgorithm(ToLongFunction<BufferedImage> function) {
+            this.function = function;
+        }
+    }
+
+    public static final int DEFAULT_MAX_DISTANCE = 5;
+    public static final int DEFAULT_MAX_REUSES = 25;
+    public static final Duration DEFAULT_MAX_REUSE_AGE = Duration.ofSeconds(10);
+
+    private final ImageServiceInterface delegate;
+    private final HashAlgorithm algorithm;
+    private final int maxDistance;
+    private final int maxReuses;
+    private final long maxReuseAgeNanos;
+
+    private boolean hasReference;
+    private long referenceHash;
+    private float referenceThreshold;
+    private boolean referenceVerdict;
+    private int referenceReuses;
+    private long referenceStoredAtNanos;
+
+    private final AtomicLong analyzedFrames = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+
+    public FrameDeduplicatingImageService(ImageServiceInterface delegate) {
+        this(delegate, HashAlgorithm.DIFFERENCE, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param maxDistance Largest Hamming distance, out of 64 bits, at which a frame still counts as unchanged
+     */
+    public FrameDeduplicatingImageService(ImageServiceInterface delegate, HashAlgorithm algorithm, int maxDistance) {
+        this(delegate, algorithm, maxDistance, DEFAULT_MAX_REUSES, DEFAULT_MAX_REUSE_AGE);
+    }
+
+    /**
+     * @param maxDistance Largest Hamming distance, out of 64 bits, at which a frame still counts as unchanged
+     * @param maxReuses Most frames that may reuse one analyzed frame's verdict
+     * @param maxReuseAge Longest time after its analysis that a frame's verdict may be reused
+     */
+    public FrameDeduplicatingImageService(ImageServiceInterface delegate, HashAlgorithm algorithm, int maxDistance,
+                                          int maxReuses, Duration maxReuseAge) {
+        if (maxDistance < 0 || maxDistance > 64) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 64");
+        }
+        if (maxReuses < 0) {
+            throw new IllegalArgumentException("maxReuses must not be negative");
+        }
+        this.delegate = delegate;
+        this.algorithm = algorithm;
+        this.maxDistance = maxDistance;
+        this.maxReuses = maxReuses;
+        this.maxReuseAgeNanos = maxReuseAge.toNanos();
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(null, confidenceThreshhold);
+        }
+        long hash = algorithm.function.applyAsLong(image);
+        Boolean previous = reuse(hash, confidenceThreshhold);
+        if (previous != null) {
+            return previous;
+        }
+        boolean verdict = delegate.imageContainsCat(image, confidenceThreshhold);
+        remember(hash, confidenceThreshhold, verdict);
+        return verdict;
+    }
+
+    /**
+     * Asynchronous variant. Changed frames go to the delegate's asynchronous variant when it has one,
+     * otherwise the delegate is called on the caller's thread.
+     */
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        if (!(delegate instanceof AsyncImageServiceInterface) || image == null) {
+            try {
+                return CompletableFuture.completedFuture(imageContainsCat(image, confidenceThreshhold));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        long hash = algorithm.function.applyAsLong(image);
+        Boolean previous = reuse(hash, confidenceThreshhold);
+        if (previous != null) {
+            return CompletableFuture.completedFuture(previous);
+        }
+        return ((AsyncImageServiceInterface) delegate).imageContainsCatAsync(image, confidenceThreshhold)
+                .thenApply(verdict -> {
+                    remember(hash, confidenceThreshhold, verdict);
+                    return verdict;
+                });
+    }
+
+    /**
+     * @return Number of frames sent to the delegate
+     */
+    public long getAnalyzedFrameCount() {
+        return analyzedFrames.get();
+    }
+
+    /**
+     * @return Number of detector calls saved by reusing the previous verdict
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrames.get();
+    }
+
+    /**
+     * Forgets the reference frame, so the next frame is always analyzed.
+     */
+    public synchronized void reset() {
+        hasReference = false;
+    }
+
+    private synchronized Boolean reuse(long hash, float confidenceThreshhold) {
+        if (hasReference && referenceThreshold == confidenceThreshhold
+                && referenceReuses < maxReuses
+                && System.nanoTime() - referenceStoredAtNanos <= maxReuseAgeNanos
+                && ImageHashes.hammingDistance(hash, referenceHash) <= maxDistance) {
+            referenceReuses++;
+            skippedFrames.incrementAndGet();
+            return referenceVerdict;
+        }
+        return null;
+    }
+
+    private synchronized void remember(long hash, float confidenceThreshhold, boolean verdict) {
+        analyzedFrames.incrementAndGet();
+        hasReference = true;
+        referenceHash = hash;
+        referenceThreshold = confidenceThreshhold;
+        referenceVerdict = verdict;
+        referenceReuses = 0;
+        referenceStoredAtNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,149 @@
+package service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
+
+/**
+ * Hash functions over image contents, used to recognize frames that were already analyzed.
+ */
+public final class ImageHashes {
+
+    private static final int HASH_SIZE = 8;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ImageHashes() {
+    }
+
+    /**
+     * 128-bit hash over the exact pixel data and dimensions of an image, as two independent 64-bit
+     * halves: FNV-1a and a multiply-rotate hash with a final avalanche. Both are computed in the same
+     * pass, and for the common raster types the backing array is hashed directly, without converting
+     * pixels to RGB first.
+     *
+     * @return Array of length 2 holding both halves
+     */
+    public static long[] pixelDigest(BufferedImage image) {
+        PixelDigest digest = new PixelDigest();
+        digest.add(image.getWidth());
+        digest.add(image.getHeight());
+        digest.add(image.getType());
+        WritableRaster raster = image.getRaster();
+        //child rasters share a larger buffer, so only whole-image rasters can be hashed straight from the array
+        if (raster.getParent() == null) {
+            DataBuffer buffer = raster.getDataBuffer();
+            if (buffer instanceof DataBufferInt && buffer.getNumBanks() == 1) {
+                for (int v : ((DataBufferInt) buffer).getData()) {
+                    digest.add(v);
+                }
+                return digest.finish();
+            }
+            if (buffer instanceof DataBufferByte && buffer.getNumBanks() == 1) {
+                for (byte v : ((DataBufferByte) buffer).getData()) {
+                    digest.add(v & 0xFF);
+                }
+                return digest.finish();
+            }
+            if (buffer instanceof DataBufferUShort && buffer.getNumBanks() == 1) {
+                for (short v : ((DataBufferUShort) buffer).getData()) {
+                    digest.add(v & 0xFFFF);
+                }
+                return digest.finish();
+            }
+        }
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int v : row) {
+                digest.add(v);
+            }
+        }
+        return digest.finish();
+    }
+
+    /**
+     * Perceptual difference hash (dHash). The image is shrunk to a 9x8 grayscale thumbnail and each bit
+     * records whether a pixel is brighter than its right-hand neighbour. Frames that differ only by
+     * noise or small lighting changes produce hashes a few bits apart.
+     */
+    public static long differenceHash(BufferedImage image) {
+        int[] gray = grayThumbnail(image, HASH_SIZE + 1, HASH_SIZE);
+        long hash = 0;
+        for (int y = 0; y < HASH_SIZE; y++) {
+            for (int x = 0; x < HASH_SIZE; x++) {
+                int i = y * (HASH_SIZE + 1) + x;
+                hash = (hash << 1) | (gray[i] > gray[i + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Perceptual average hash (aHash). The image is shrunk to an 8x8 grayscale thumbnail and each bit
+     * records whether a pixel is brighter than the thumbnail's mean.
+     */
+    public static long averageHash(BufferedImage image) {
+        int[] gray = grayThumbnail(image, HASH_SIZE, HASH_SIZE);
+        int sum = 0;
+        for (int v : gray) {
+            sum += v;
+        }
+        int mean = sum / gray.length;
+        long hash = 0;
+        for (int v : gray) {
+            hash = (hash << 1) | (v > mean ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * @return Number of bits in which two hashes differ
+     */
+    public static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static int[] grayThumbnail(BufferedImage image, int width, int height) {
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail.getRaster().getPixels(0, 0, width, height, new int[width * height]);
+    }
+
+    private static final class PixelDigest {
+        private static final long MIX_SEED = 0x9E3779B97F4A7C15L;
+        private static final long MIX_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+        private long fnv = FNV_OFFSET;
+        private long mixed = MIX_SEED;
+
+        void add(int v) {
+            fnv = (fnv ^ (v & 0xFFFFFFFFL)) * FNV_PRIME;
+            mixed = Long.rotateLeft(mixed ^ (v * MIX_SEED), 31) * MIX_MULTIPLIER;
+        }
+
+        long[] finish() {
+            //murmur3 finalizer, so every input bit reaches every output bit
+            long h = mixed;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return new long[]{fnv, h};
+        }
+    }
+}
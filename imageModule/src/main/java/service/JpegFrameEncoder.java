@@ -0,0 +1,223 @@
+package service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Encodes camera frames to JPEG with as little copying as possible. Each encode borrows an
+ * {@link ImageWriter} and an in-memory output stream the writer encodes straight into from a small pool,
+ * so encoding a frame neither looks up a writer, nor goes through ImageIO's stream cache, nor regrows a
+ * fresh buffer. The pool keeps at most {@code maxIdleEncoders} of them between encodes, so callers on
+ * short-lived threads don't each leave a writer and its buffer behind; writers that don't fit back in
+ * are disposed.
+ * The only copy made is the final one into an array of the exact encoded length. Frames larger than the
+ * detector needs are scaled down first, which also makes the encoded payload smaller.
+ */
+public class JpegFrameEncoder {
+
+    public static final float DEFAULT_QUALITY = 0.85f;
+    public static final int DEFAULT_MAX_DIMENSION = 1280;
+
+    //buffers that grew past this for an unusually large frame are dropped again after use
+    private static final int RETAINED_BUFFER_LIMIT = 4 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 256 * 1024;
+
+    private final float quality;
+    private final int maxDimension;
+    private final BlockingQueue<EncoderState> idle;
+
+    public JpegFrameEncoder() {
+        this(DEFAULT_QUALITY, DEFAULT_MAX_DIMENSION);
+    }
+
+    /**
+     * @param quality JPEG quality between 0 and 1
+     * @param maxDimension Longest side, in pixels, a frame is scaled down to before encoding
+     */
+    public JpegFrameEncoder(float quality, int maxDimension) {
+        this(quality, maxDimension, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param quality JPEG quality between 0 and 1
+     * @param maxDimension Longest side, in pixels, a frame is scaled down to before encoding
+     * @param maxIdleEncoders Most writers and buffers kept for reuse between encodes
+     */
+    public JpegFrameEncoder(float quality, int maxDimension, int maxIdleEncoders) {
+        if (quality < 0 || quality > 1) {
+            throw new IllegalArgumentException("quality must be between 0 and 1");
+        }
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("maxDimension must be positive");
+        }
+        if (maxIdleEncoders < 1) {
+            throw new IllegalArgumentException("maxIdleEncoders must be positive");
+        }
+        this.quality = quality;
+        this.maxDimension = maxDimension;
+        this.idle = new ArrayBlockingQueue<>(maxIdleEncoders);
+    }
+
+    /**
+     * @return The JPEG bytes of the frame, in an array of exactly the encoded length that the caller may keep
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        BufferedImage frame = prepare(image);
+        EncoderState s = acquire();
+        try {
+            s.out.rewind();
+            try {
+                s.writer.setOutput(s.out);
+                s.writer.write(null, new IIOImage(frame, null, null), s.param);
+                s.out.flush();
+            } finally {
+                s.writer.reset();
+            }
+            byte[] encoded = s.out.toByteArray();
+            if (s.out.capacity() > RETAINED_BUFFER_LIMIT) {
+                s.out = new ByteArrayImageOutputStream(INITIAL_BUFFER_SIZE);
+            }
+            return encoded;
+        } finally {
+            release(s);
+        }
+    }
+
+    /**
+     * @return Number of writers currently kept for reuse
+     */
+    int idleEncoders() {
+        return idle.size();
+    }
+
+    private EncoderState acquire() {
+        EncoderState s = idle.poll();
+        return s != null ? s : new EncoderState();
+    }
+
+    private void release(EncoderState s) {
+        if (!idle.offer(s)) {
+            s.writer.dispose();
+        }
+    }
+
+    /**
+     * Scales the frame down to {@code maxDimension} and drops any alpha channel, which the JPEG writer rejects.
+     */
+    BufferedImage prepare(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        boolean opaqueRgb = image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR;
+        if (scale == 1.0 && opaqueRgb) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private final class EncoderState {
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        private final ImageWriteParam param = writer.getDefaultWriteParam();
+        private ByteArrayImageOutputStream out = new ByteArrayImageOutputStream(INITIAL_BUFFER_SIZE);
+
+        private EncoderState() {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+    }
+
+    /**
+     * Image output stream backed by a single growable array, so the writer's output lands directly in
+     * memory we control instead of ImageIO's file or memory cache.
+     */
+    private static final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+        private byte[] buf;
+        private int length;
+
+        private ByteArrayImageOutputStream(int size) {
+            buf = new byte[size];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + 1);
+            buf[(int) streamPos++] = (byte) b;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + len);
+            System.arraycopy(b, off, buf, (int) streamPos, len);
+            streamPos += len;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            return streamPos < length ? buf[(int) streamPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            int n = Math.min(len, length - (int) streamPos);
+            System.arraycopy(buf, (int) streamPos, b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        private void rewind() throws IOException {
+            length = 0;
+            flushedPos = 0;
+            seek(0);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, length);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+
+        private void ensureCapacity(long required) {
+            if (required > buf.length) {
+                buf = Arrays.copyOf(buf, (int) Math.max(required, buf.length * 2L));
+            }
+        }
+    }
+}
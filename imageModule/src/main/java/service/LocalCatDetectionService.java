@@ -0,0 +1,181 @@
+package service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Offline image service that guesses at cats without any network access. It is not a classifier and
+ * knows nothing about cat shapes: it is a colour and texture threshold. The frame is shrunk to a working
+ * resolution and cut into square tiles, and a tile counts as fur when it is mostly warm tan, ginger or
+ * cream with a fine, even texture and no hard edges. The share of such tiles is turned into a confidence
+ * between 0 and 100.
+ *
+ * That makes it wrong in predictable ways. Wood, carpet, bread or skin filling the frame reads as a cat,
+ * and grey, black or white cats never do, however clearly they are shown. Use it where a network call is
+ * not possible and a rough warm-fur signal is good enough, not as a stand-in for a trained model.
+ *
+ * Tiles are scored in parallel with fork/join, and the result only depends on the pixels, so the same
+ * frame always gets the same answer.
+ */
+public class LocalCatDetectionService implements ImageServiceInterface {
+
+    public static final int DEFAULT_WORKING_WIDTH = 320;
+    static final int TILE_SIZE = 16;
+
+    //share of fur tiles at which the detector is fully confident
+    private static final double FULL_CONFIDENCE_FUR_SHARE = 0.5;
+    //tiles per fork/join leaf task
+    private static final int TILES_PER_TASK = 16;
+
+    private final int workingWidth;
+    private final ForkJoinPool pool;
+
+    public LocalCatDetectionService() {
+        this(DEFAULT_WORKING_WIDTH, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param workingWidth Width frames are scaled to before scoring
+     * @param pool Pool the tile scoring runs on
+     */
+    public LocalCatDetectionService(int workingWidth, ForkJoinPool pool) {
+        if (workingWidth < TILE_SIZE) {
+            throw new IllegalArgumentException("workingWidth must be at least " + TILE_SIZE);
+        }
+        this.workingWidth = workingWidth;
+        this.pool = pool;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return catConfidence(image) >= confidenceThreshhold;
+    }
+
+    /**
+     * @return Confidence between 0 and 100 that the image shows a cat
+     */
+    public float catConfidence(BufferedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        BufferedImage frame = toWorkingSize(image);
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int[] rgb = frame.getRGB(0, 0, width, height, null, 0, width);
+        int tilesAcross = width / TILE_SIZE;
+        int tilesDown = height / TILE_SIZE;
+        int tileCount = tilesAcross * tilesDown;
+        if (tileCount == 0) {
+            return 0;
+        }
+        int furTiles = pool.invoke(new TileTask(rgb, width, tilesAcross, 0, tileCount));
+        double furShare = (double) furTiles / tileCount;
+        return (float) Math.min(100.0, furShare / FULL_CONFIDENCE_FUR_SHARE * 100.0);
+    }
+
+    private BufferedImage toWorkingSize(BufferedImage image) {
+        double scale = Math.min(1.0, (double) workingWidth / image.getWidth());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return frame;
+    }
+
+    /**
+     * Counts fur tiles in a range of tiles, splitting the range until it is small enough to score directly.
+     */
+    private static final class TileTask extends RecursiveTask<Integer> {
+        private final int[] rgb;
+        private final int width;
+        private final int tilesAcross;
+        private final int from;
+        private final int to;
+
+        private TileTask(int[] rgb, int width, int tilesAcross, int from, int to) {
+            this.rgb = rgb;
+            this.width = width;
+            this.tilesAcross = tilesAcross;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= TILES_PER_TASK) {
+                int fur = 0;
+                for (int tile = from; tile < to; tile++) {
+                    if (isFur(rgb, width, (tile % tilesAcross) * TILE_SIZE, (tile / tilesAcross) * TILE_SIZE)) {
+                        fur++;
+                    }
+                }
+                return fur;
+            }
+            int middle = (from + to) >>> 1;
+            TileTask left = new TileTask(rgb, width, tilesAcross, from, middle);
+            left.fork();
+            int right = new TileTask(rgb, width, tilesAcross, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Scores one tile. A fur tile is dominated by fur-coloured pixels and has a fine texture: neighbouring
+     * pixels differ a little almost everywhere, but rarely by as much as at the edge of a solid object.
+     */
+    static boolean isFur(int[] rgb, int width, int x0, int y0) {
+        int furColoured = 0;
+        int textured = 0;
+        int hardEdges = 0;
+        int pixels = 0;
+        for (int y = y0; y < y0 + TILE_SIZE - 1; y++) {
+            for (int x = x0; x < x0 + TILE_SIZE - 1; x++) {
+                int p = rgb[y * width + x];
+                if (isFurColour(p)) {
+                    furColoured++;
+                }
+                int l = luma(p);
+                int gradient = Math.abs(l - luma(rgb[y * width + x + 1])) + Math.abs(l - luma(rgb[(y + 1) * width + x]));
+                if (gradient >= 8) {
+                    textured++;
+                }
+                if (gradient >= 80) {
+                    hardEdges++;
+                }
+                pixels++;
+            }
+        }
+        return furColoured * 10 >= pixels * 7
+                && textured * 10 >= pixels * 5
+                && hardEdges * 20 <= pixels;
+    }
+
+    /**
+     * Warm tan, ginger and cream tones: red over green over blue, with a moderate saturation.
+     */
+    static boolean isFurColour(int p) {
+        int r = (p >> 16) & 0xFF;
+        int g = (p >> 8) & 0xFF;
+        int b = p & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        if (max < 60 || r != max || g < b) {
+            return false;
+        }
+        int saturation = (max - min) * 100 / max;
+        return saturation >= 12 && saturation <= 75;
+    }
+
+    private static int luma(int p) {
+        return (((p >> 16) & 0xFF) * 299 + ((p >> 8) & 0xFF) * 587 + (p & 0xFF) * 114) / 1000;
+    }
+}
@@ -0,0 +1,186 @@
+package service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image service that coalesces single-image requests from many cameras into batches for a
+ * {@link BatchImageService}. A batch is dispatched once it holds {@code maxBatchSize} frames or the
+ * oldest frame in it has waited {@code linger}, whichever comes first, and the verdicts are then handed
+ * back to the individual callers. Frames with different confidence thresholds go out in separate batches.
+ *
+ * Batches are dispatched one at a time from a single thread; requests arriving while a batch is being
+ * scanned simply accumulate into the next one. If the backend throws an {@link Error} the dispatcher
+ * stops: the batch and every queued request fail with it, and so does any request made afterwards.
+ */
+public class MicroBatchingImageService implements ImageServiceInterface, AsyncImageServiceInterface, AutoCloseable {
+
+    private final BatchImageService backend;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+
+    public MicroBatchingImageService(BatchImageService backend, int maxBatchSize, Duration linger) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.backend = backend;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+        dispatcher = new Thread(this::dispatchLoop, "catpoint-image-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        try {
+            return imageContainsCatAsync(image, confidenceThreshhold).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        if (!running) {
+            return CompletableFuture.failedFuture(closed());
+        }
+        Request request = new Request(image, confidenceThreshhold);
+        requests.add(request);
+        //close() may have drained the queue between the check above and the add, in which case nobody
+        //else will ever look at this request
+        if (!running && requests.remove(request)) {
+            request.verdict.completeExceptionally(closed());
+        }
+        return request.verdict;
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getFrameCount() {
+        return frames.get();
+    }
+
+    /**
+     * @return Average share of the maximum batch size that dispatched batches actually used, between 0 and 1
+     */
+    public double getBatchFillRatio() {
+        long dispatched = batches.get();
+        return dispatched == 0 ? 0 : (double) frames.get() / (dispatched * maxBatchSize);
+    }
+
+    /**
+     * Stops the dispatcher. Requests that were not yet dispatched, and any made from now on, fail with an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        dispatcher.interrupt();
+        dispatcher.join();
+        Request pending;
+        while ((pending = requests.poll()) != null) {
+            pending.verdict.completeExceptionally(closed());
+        }
+    }
+
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Request first = requests.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    batch.forEach(r -> r.verdict.completeExceptionally(closed()));
+                    return;
+                }
+            }
+            dispatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void dispatch(List<Request> batch) {
+        Map<Float, List<Request>> byThreshold = new LinkedHashMap<>();
+        for (Request request : batch) {
+            byThreshold.computeIfAbsent(request.confidenceThreshhold, t -> new ArrayList<>()).add(request);
+        }
+        Error fatal = null;
+        for (Map.Entry<Float, List<Request>> entry : byThreshold.entrySet()) {
+            List<Request> group = entry.getValue();
+            batches.incrementAndGet();
+            frames.addAndGet(group.size());
+            List<BufferedImage> images = new ArrayList<>(group.size());
+            group.forEach(r -> images.add(r.image));
+            try {
+                List<Boolean> verdicts = backend.imagesContainCat(images, entry.getKey());
+                if (verdicts == null || verdicts.size() != group.size()) {
+                    throw new IllegalStateException("Batch image service returned the wrong number of verdicts");
+                }
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).verdict.complete(verdicts.get(i));
+                }
+            } catch (Throwable e) {
+                group.forEach(r -> r.verdict.completeExceptionally(e));
+                if (e instanceof Error && fatal == null) {
+                    fatal = (Error) e;
+                }
+            }
+        }
+        if (fatal != null) {
+            //the dispatcher dies with the error, so nobody would ever answer the requests still queued
+            running = false;
+            Request pending;
+            while ((pending = requests.poll()) != null) {
+                pending.verdict.completeExceptionally(fatal);
+            }
+            throw fatal;
+        }
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("Image batcher has been closed");
+    }
+
+    private static final class Request {
+        private final BufferedImage image;
+        private final float confidenceThreshhold;
+        private final CompletableFuture<Boolean> verdict = new CompletableFuture<>();
+
+        private Request(BufferedImage image, float confidenceThreshhold) {
+            this.image = image;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+    }
+}
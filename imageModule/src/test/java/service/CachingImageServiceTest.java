@@ -0,0 +1,97 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingImageServiceTest {
+
+    private final AtomicInteger detections = new AtomicInteger();
+    private final ImageServiceInterface countingDetector = (image, threshold) -> {
+        detections.incrementAndGet();
+        return image.getWidth() > image.getHeight();
+    };
+
+    @Test
+    void leastRecentlyUsedFrame_isEvicted_andHitsAndMissesAreCounted() {
+        CachingImageService cache = new CachingImageService(countingDetector, 2, Duration.ofMinutes(1));
+        BufferedImage wide = frame(4, 1, 7);
+        BufferedImage tall = frame(1, 4, 7);
+        BufferedImage square = frame(2, 2, 7);
+
+        assertTrue(cache.imageContainsCat(wide, 50.0f));
+        assertFalse(cache.imageContainsCat(tall, 50.0f));
+        assertTrue(cache.imageContainsCat(frame(4, 1, 7), 50.0f));
+        assertFalse(cache.imageContainsCat(square, 50.0f));
+        assertFalse(cache.imageContainsCat(tall, 50.0f));
+
+        assertEquals(4, detections.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void expiredVerdict_isDetectedAgain() throws InterruptedException {
+        CachingImageService cache = new CachingImageService(countingDetector, 10, Duration.ofMillis(20));
+        BufferedImage frame = frame(4, 1, 3);
+        cache.imageContainsCat(frame, 50.0f);
+        cache.imageContainsCat(frame, 50.0f);
+        Thread.sleep(50);
+        cache.imageContainsCat(frame, 50.0f);
+
+        assertEquals(2, detections.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void concurrentRequestsForSameFrame_shareOneDetection() throws Exception {
+        CountDownLatch detecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ImageServiceInterface slowDetector = (image, threshold) -> {
+            detections.incrementAndGet();
+            detecting.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        CachingImageService cache = new CachingImageService(slowDetector, 10, Duration.ofMinutes(1));
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> cache.imageContainsCat(frame(2, 2, 1), 50.0f));
+        assertTrue(detecting.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> cache.imageContainsCat(frame(2, 2, 1), 50.0f));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getSharedDetectionCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, detections.get());
+        assertEquals(1, cache.getSharedDetectionCount());
+        assertTrue(cache.imageContainsCat(frame(2, 2, 1), 50.0f));
+        assertEquals(1, detections.get());
+    }
+
+    //every pixel set to the same value, so frames with equal pixel counts only differ in their shape
+    private static BufferedImage frame(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+}
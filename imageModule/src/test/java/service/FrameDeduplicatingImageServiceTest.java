@@ -0,0 +1,68 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameDeduplicatingImageServiceTest {
+
+    private final AtomicInteger detections = new AtomicInteger();
+    private final ImageServiceInterface countingDetector = (image, threshold) -> {
+        detections.incrementAndGet();
+        return image.getRGB(0, 0) != 0;
+    };
+
+    @Test
+    void unchangedFrames_reuseTheVerdict_untilTheReuseCountRunsOut() {
+        FrameDeduplicatingImageService deduplicator = new FrameDeduplicatingImageService(countingDetector,
+                FrameDeduplicatingImageService.HashAlgorithm.DIFFERENCE, 0, 3, Duration.ofMinutes(1));
+        for (int i = 0; i < 8; i++) {
+            assertTrue(deduplicator.imageContainsCat(gradient(false), 50.0f));
+        }
+
+        assertEquals(2, detections.get());
+        assertEquals(2, deduplicator.getAnalyzedFrameCount());
+        assertEquals(6, deduplicator.getSkippedFrameCount());
+    }
+
+    @Test
+    void unchangedFrame_isAnalyzedAgain_onceTheReferenceIsTooOld() throws InterruptedException {
+        FrameDeduplicatingImageService deduplicator = new FrameDeduplicatingImageService(countingDetector,
+                FrameDeduplicatingImageService.HashAlgorithm.DIFFERENCE, 0, 100, Duration.ofMillis(20));
+        deduplicator.imageContainsCat(gradient(false), 50.0f);
+        deduplicator.imageContainsCat(gradient(false), 50.0f);
+        Thread.sleep(50);
+        deduplicator.imageContainsCat(gradient(false), 50.0f);
+
+        assertEquals(2, detections.get());
+        assertEquals(1, deduplicator.getSkippedFrameCount());
+    }
+
+    @Test
+    void changedFrame_isAnalyzed_andBecomesTheReference() {
+        FrameDeduplicatingImageService deduplicator = new FrameDeduplicatingImageService(countingDetector);
+        assertTrue(deduplicator.imageContainsCat(gradient(false), 50.0f));
+        assertTrue(deduplicator.imageContainsCat(gradient(false), 50.0f));
+        assertTrue(deduplicator.imageContainsCat(gradient(true), 50.0f));
+        assertTrue(deduplicator.imageContainsCat(gradient(true), 50.0f));
+
+        assertEquals(2, detections.get());
+        assertEquals(2, deduplicator.getSkippedFrameCount());
+    }
+
+    //brightness rising left to right, or right to left when mirrored, which every dHash bit sees
+    private static BufferedImage gradient(boolean mirrored) {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int v = (mirrored ? image.getWidth() - 1 - x : x) * 255 / image.getWidth();
+                image.setRGB(x, y, (1 << 16) | (v << 8) | v);
+            }
+        }
+        return image;
+    }
+}
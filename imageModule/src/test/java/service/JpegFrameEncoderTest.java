@@ -0,0 +1,63 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegFrameEncoderTest {
+
+    @Test
+    void encode_smallFrame_decodesToSameDimensions() throws IOException {
+        JpegFrameEncoder encoder = new JpegFrameEncoder();
+        BufferedImage decoded = roundTrip(encoder, new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB));
+        assertEquals(64, decoded.getWidth());
+        assertEquals(48, decoded.getHeight());
+    }
+
+    @Test
+    void encode_largeTranslucentFrame_isScaledDownToMaxDimension() throws IOException {
+        JpegFrameEncoder encoder = new JpegFrameEncoder(0.5f, 100);
+        BufferedImage decoded = roundTrip(encoder, new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB));
+        assertEquals(100, decoded.getWidth());
+        assertEquals(50, decoded.getHeight());
+    }
+
+    @Test
+    void encode_fromManyShortLivedThreads_keepsAtMostTheIdleLimit() throws Exception {
+        JpegFrameEncoder encoder = new JpegFrameEncoder(JpegFrameEncoder.DEFAULT_QUALITY, JpegFrameEncoder.DEFAULT_MAX_DIMENSION, 2);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    assertEquals(32, roundTrip(encoder, new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB)).getWidth());
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertTrue(encoder.idleEncoders() >= 1 && encoder.idleEncoders() <= 2);
+    }
+
+    private static BufferedImage roundTrip(JpegFrameEncoder encoder, BufferedImage image) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoder.encode(image)));
+        assertNotNull(decoded);
+        return decoded;
+    }
+}
@@ -0,0 +1,54 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalCatDetectionServiceTest {
+
+    //threshold SecurityService asks for
+    private static final float THRESHOLD = 50.0f;
+
+    private final LocalCatDetectionService detectionService = new LocalCatDetectionService();
+
+    @Test
+    void imageContainsCat_sampleCat_isDetected() throws IOException {
+        BufferedImage image = sample("sample-cat.jpg");
+        assertTrue(detectionService.imageContainsCat(image, THRESHOLD));
+        assertEquals(detectionService.catConfidence(image), detectionService.catConfidence(image));
+    }
+
+    @Test
+    void imageContainsCat_sampleNotCat_isNotDetected() throws IOException {
+        assertFalse(detectionService.imageContainsCat(sample("sample-not-cat.jpg"), THRESHOLD));
+    }
+
+    @Test
+    void catConfidence_greyFrameOrNoFrame_isZero() {
+        assertEquals(0.0f, detectionService.catConfidence(filled(Color.GRAY)));
+        assertEquals(0.0f, detectionService.catConfidence(null));
+    }
+
+    private static BufferedImage filled(Color colour) {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(colour);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+        return image;
+    }
+
+    //the samples live at the root of the project, one level above the module
+    private static BufferedImage sample(String name) throws IOException {
+        BufferedImage image = ImageIO.read(Path.of("..", name).toFile());
+        assertNotNull(image, name);
+        return image;
+    }
+}
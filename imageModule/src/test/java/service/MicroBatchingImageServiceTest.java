@@ -0,0 +1,99 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroBatchingImageServiceTest {
+
+    //cats are the frames with an even width, so every caller can check it got its own verdict back
+    private static final BatchImageService EVEN_WIDTH_IS_CAT = (images, threshold) -> {
+        List<Boolean> verdicts = new ArrayList<>();
+        images.forEach(image -> verdicts.add(image.getWidth() % 2 == 0));
+        return verdicts;
+    };
+
+    @Test
+    void fullBatch_isDispatchedBeforeLinger_andVerdictsGoBackToTheirCallers() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        BatchImageService backend = (images, threshold) -> {
+            batchSizes.add(images.size());
+            return EVEN_WIDTH_IS_CAT.imagesContainCat(images, threshold);
+        };
+        try (MicroBatchingImageService batcher = new MicroBatchingImageService(backend, 4, Duration.ofSeconds(30))) {
+            List<CompletableFuture<Boolean>> verdicts = new ArrayList<>();
+            for (int width = 1; width <= 8; width++) {
+                verdicts.add(batcher.imageContainsCatAsync(new BufferedImage(width, 1, BufferedImage.TYPE_INT_RGB), 50.0f));
+            }
+            for (int i = 0; i < verdicts.size(); i++) {
+                assertEquals((i + 1) % 2 == 0, verdicts.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of(4, 4), batchSizes);
+            assertEquals(2, batcher.getBatchCount());
+            assertEquals(1.0, batcher.getBatchFillRatio());
+        }
+    }
+
+    @Test
+    void partialBatch_isDispatchedOnceLingerExpires() throws Exception {
+        try (MicroBatchingImageService batcher = new MicroBatchingImageService(EVEN_WIDTH_IS_CAT, 100, Duration.ofMillis(20))) {
+            CompletableFuture<Boolean> cat = batcher.imageContainsCatAsync(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB), 50.0f);
+            assertFalse(batcher.imageContainsCat(new BufferedImage(3, 1, BufferedImage.TYPE_INT_RGB), 50.0f));
+            assertTrue(cat.get(5, TimeUnit.SECONDS));
+            assertEquals(2, batcher.getFrameCount());
+        }
+    }
+
+    @Test
+    void errorFromBackend_failsEveryRequest_insteadOfLeavingThemPending() throws Exception {
+        Error broken = new Error("backend broke");
+        BatchImageService backend = (images, threshold) -> {
+            throw broken;
+        };
+        try (MicroBatchingImageService batcher = new MicroBatchingImageService(backend, 100, Duration.ofMillis(20))) {
+            CompletableFuture<Boolean> first = batcher.imageContainsCatAsync(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB), 50.0f);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertSame(broken, failure.getCause());
+
+            CompletableFuture<Boolean> later = batcher.imageContainsCatAsync(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB), 50.0f);
+            assertThrows(ExecutionException.class, () -> later.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void close_failsQueuedRequests_andRejectsNewOnes() throws Exception {
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchImageService slowBackend = (images, threshold) -> {
+            scanning.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                //close() interrupts the dispatcher; finish the batch in hand anyway
+            }
+            return EVEN_WIDTH_IS_CAT.imagesContainCat(images, threshold);
+        };
+        MicroBatchingImageService batcher = new MicroBatchingImageService(slowBackend, 1, Duration.ZERO);
+        CompletableFuture<Boolean> inFlight = batcher.imageContainsCatAsync(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB), 50.0f);
+        assertTrue(scanning.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = batcher.imageContainsCatAsync(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB), 50.0f);
+
+        batcher.close();
+
+        assertTrue(inFlight.get(5, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertThrows(IllegalStateException.class,
+                () -> batcher.imageContainsCat(new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB), 50.0f));
+    }
+}
@@ -1,11 +1,35 @@
 package catpoint.application;
 
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.management.ManagementFactory;
+
 /**
  * This is the main class that launches the application.
+ *
+ * The frame is built on the event dispatch thread and shown without waiting for the stored sensors, which
+ * are loaded in the background. How long it took to the first frame and to the sensors is printed on startup.
  */
 public class CatpointApp {
     public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+        long mainStarted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            CatpointGui gui = new CatpointGui();
+            gui.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    reportStartup("first frame", mainStarted);
+                }
+            });
+            gui.whenSensorsLoaded().thenRun(() -> reportStartup("sensors loaded", mainStarted));
+            gui.setVisible(true);
+        });
+    }
+
+    private static void reportStartup(String milestone, long mainStarted) {
+        long sinceMain = (System.nanoTime() - mainStarted) / 1_000_000;
+        long sinceLaunch = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.out.printf("Startup: %s after %d ms (%d ms since JVM launch)%n", milestone, sinceMain, sinceLaunch);
     }
 }
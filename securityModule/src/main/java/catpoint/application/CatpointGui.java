@@ -1,14 +1,16 @@
 package catpoint.application;
 
 import catpoint.data.PretendDatabaseSecurityRepositoryImpl;
-import catpoint.data.SecurityRepository;
 import catpoint.data.service.FakeImageService;
 
 import catpoint.service.SecurityService;
+import catpoint.service.StatusNotificationBus;
 import net.miginfocom.swing.MigLayout;
 import service.ImageServiceInterface;
 
 import javax.swing.*;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -17,12 +19,22 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+    //state changes return straight away, a background flush and the shutdown hook write them to preferences.
+    // Stored sensors are parsed in the background so the frame doesn't wait for them.
+    private PretendDatabaseSecurityRepositoryImpl securityRepository = new PretendDatabaseSecurityRepositoryImpl(
+            PretendDatabaseSecurityRepositoryImpl.WriteMode.WRITE_BEHIND, PretendDatabaseSecurityRepositoryImpl.DEFAULT_FLUSH_INTERVAL,
+            ForkJoinPool.commonPool());
     private ImageServiceInterface imageService = new FakeImageService();
     private SecurityService securityService = new SecurityService(securityRepository, imageService);
+    {
+        //panels get one coalesced update per frame on the EDT instead of a refresh per event
+        securityService.useNotificationBus(new StatusNotificationBus());
+        //the service isn't thread-safe, so scan results are applied on the EDT like every other change
+        securityService.setVerdictExecutor(SwingUtilities::invokeLater);
+    }
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
     private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
+    private SensorPanel sensorPanel = new SensorPanel(securityService, securityRepository.whenSensorsLoaded());
     private ImagePanel imagePanel = new ImagePanel(securityService);
 
     public CatpointGui() {
@@ -41,4 +53,11 @@ public class CatpointGui extends JFrame {
         getContentPane().add(mainPanel);
 
     }
+
+    /**
+     * Completes once the stored sensors are loaded and the sensor panel can show them.
+     */
+    public CompletionStage<Void> whenSensorsLoaded() {
+        return securityRepository.whenSensorsLoaded();
+    }
 }
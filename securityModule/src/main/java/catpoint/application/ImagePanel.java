@@ -60,10 +60,13 @@ public class ImagePanel extends JPanel implements StatusListener {
             repaint();
         });
 
-        //button that sends the image to the image service
+        //button that sends the image to the image service. Analysis runs in the background so the UI stays responsive
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            securityService.processImageAsync(currentCameraImage).exceptionally(error -> {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Unable to scan picture, please try again."));
+                return null;
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
@@ -79,6 +82,11 @@ public class ImagePanel extends JPanel implements StatusListener {
 
     @Override
     public void catDetected(boolean catDetected) {
+        //detection results arrive on a background thread, Swing components may only be touched on the EDT
+        if(!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> catDetected(catDetected));
+            return;
+        }
         if(catDetected) {
             cameraHeader.setText("DANGER - CAT DETECTED");
         } else {
@@ -9,6 +9,13 @@ import catpoint.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
@@ -25,10 +32,21 @@ public class SensorPanel extends JPanel implements StatusListener{
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel = new SensorTableModel();
+    private JTable sensorTable = new JTable(sensorTableModel);
     private JPanel newSensorPanel;
+    private boolean sensorsLoaded; //only touched on the EDT
 
     public SensorPanel(SecurityService securityService) {
+        this(securityService, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Builds the panel without waiting for the sensors. Until they are loaded the table is empty and
+     * sensors can't be added, afterwards the table is filled on the EDT.
+     * @param sensorsLoaded Completes once the securityService can hand out its sensors without blocking
+     */
+    public SensorPanel(SecurityService securityService, CompletionStage<?> sensorsLoaded) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
@@ -40,14 +58,34 @@ public class SensorPanel extends JPanel implements StatusListener{
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        JScrollPane sensorListPane = buildSensorTable();
 
-        updateSensorList(sensorListPanel);
+        addNewSensorButton.setEnabled(false);
+        panelLabel.setText("Sensor Management (loading sensors...)");
+        sensorsLoaded.whenComplete((ignored, failure) -> runOnEdt(() -> sensorsLoaded(failure)));
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(sensorListPane, "span");
+    }
+
+    private static void runOnEdt(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+
+    private void sensorsLoaded(Throwable failure) {
+        if (failure != null) {
+            panelLabel.setText("Sensor Management (sensors unavailable)");
+            return;
+        }
+        sensorsLoaded = true;
+        panelLabel.setText("Sensor Management");
+        addNewSensorButton.setEnabled(true);
+        sensorTableModel.setSensors(securityService.getSensors());
     }
 
     /**
@@ -65,65 +103,106 @@ public class SensorPanel extends JPanel implements StatusListener{
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the sensor table. Only visible rows are rendered, and the toggle and remove buttons are
+     * painted by one shared renderer rather than being real components per sensor.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private JScrollPane buildSensorTable() {
+        sensorTable.setRowHeight(28);
+        sensorTable.setShowGrid(false);
+        sensorTable.setTableHeader(null);
+        sensorTable.setRowSelectionAllowed(false);
+        sensorTable.setFocusable(false);
+        //hard code some sizes, tsk tsk
+        sensorTable.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(220);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.STATUS_COLUMN).setPreferredWidth(80);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setPreferredWidth(100);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setPreferredWidth(130);
+        ButtonRenderer buttonRenderer = new ButtonRenderer();
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setCellRenderer(buttonRenderer);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setCellRenderer(buttonRenderer);
+        sensorTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = sensorTable.rowAtPoint(e.getPoint());
+                int column = sensorTable.columnAtPoint(e.getPoint());
+                if (row < 0) {
+                    return;
+                }
+                Sensor s = sensorTableModel.getSensorAt(row);
+                if (column == SensorTableModel.TOGGLE_COLUMN) {
+                    setSensorActivity(s, !s.getActive());
+                } else if (column == SensorTableModel.REMOVE_COLUMN) {
+                    removeSensor(s);
+                }
+            }
         });
+        JScrollPane scrollPane = new JScrollPane(sensorTable);
+        scrollPane.setPreferredSize(new Dimension(530, 150));
+        return scrollPane;
+    }
 
-        repaint();
-        revalidate();
+    /**
+     * Brings the table in line with the sensors the securityService knows about. If the set of sensors
+     * is unchanged only their rows are repainted, otherwise the table is rebuilt.
+     */
+    private void refreshSensorTable() {
+        if (!sensorsLoaded) {
+            return; //the table is filled once loading completes
+        }
+        if (sensorTableModel.containsExactly(securityService.getSensors())) {
+            sensorTableModel.allSensorsChanged();
+        } else {
+            sensorTableModel.setSensors(securityService.getSensors());
+        }
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status and then repaints that sensor's row
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.sensorChanged(sensor);
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then inserts its row
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
         if(securityService.getSensors().size() < 4) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+            sensorTableModel.addSensor(sensor);
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService and then delete its row
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.removeSensor(sensor);
     }
     @Override
     public void sensorStatusChanged()
     {
-        updateSensorList(sensorListPanel);
+        refreshSensorTable();
+    }
+
+    /**
+     * Repaints only the rows of the sensors that changed. A sensor the table doesn't list yet means the
+     * set of sensors changed too, so the table is rebuilt.
+     */
+    @Override
+    public void sensorsChanged(Collection<Sensor> changed)
+    {
+        if (sensorsLoaded && !sensorTableModel.sensorsChanged(changed)) {
+            sensorTableModel.setSensors(securityService.getSensors());
+        }
     }
     @Override
     public void notify(AlarmStatus status)
@@ -137,4 +216,16 @@ public class SensorPanel extends JPanel implements StatusListener{
     {
 
     }
+
+    /**
+     * Paints button-looking cells. One button instance is reused for every visible cell.
+     */
+    private static class ButtonRenderer extends JButton implements TableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            setText(value.toString());
+            return this;
+        }
+    }
 }
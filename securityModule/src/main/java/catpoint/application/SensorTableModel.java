@@ -0,0 +1,164 @@
+package catpoint.application;
+
+import catpoint.data.Sensor;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Table model listing sensors in their display order. Changes are reported per row, so the table
+ * only repaints the sensors that actually changed.
+ */
+public class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int STATUS_COLUMN = 1;
+    static final int TOGGLE_COLUMN = 2;
+    static final int REMOVE_COLUMN = 3;
+
+    private static final String[] COLUMN_NAMES = {"Sensor", "Status", "", ""};
+
+    private final List<Sensor> sensors = new ArrayList<>();
+    private final Map<UUID, Integer> rowsById = new HashMap<>();
+
+    /**
+     * Replaces all rows with the given sensors.
+     */
+    public void setSensors(Collection<Sensor> newSensors) {
+        sensors.clear();
+        sensors.addAll(newSensors);
+        Collections.sort(sensors);
+        reindex(0);
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return True if the model lists exactly the given sensors
+     */
+    public boolean containsExactly(Collection<Sensor> others) {
+        if (others.size() != sensors.size()) {
+            return false;
+        }
+        for (Sensor sensor : others) {
+            if (!rowsById.containsKey(sensor.getSensorId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void addSensor(Sensor sensor) {
+        if (rowsById.containsKey(sensor.getSensorId())) {
+            sensorChanged(sensor);
+            return;
+        }
+        int position = Collections.binarySearch(sensors, sensor);
+        int row = position < 0 ? -position - 1 : position;
+        sensors.add(row, sensor);
+        reindex(row);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void removeSensor(Sensor sensor) {
+        Integer row = rowsById.remove(sensor.getSensorId());
+        if (row == null) {
+            return;
+        }
+        sensors.remove((int) row);
+        reindex(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Repaints the row of a sensor whose state changed.
+     */
+    public void sensorChanged(Sensor sensor) {
+        Integer row = rowsById.get(sensor.getSensorId());
+        if (row != null) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Repaints the rows of the given sensors, firing one update per run of adjacent rows.
+     * @return False if any of them isn't in the model, in which case nothing was repainted
+     */
+    public boolean sensorsChanged(Collection<Sensor> changed) {
+        int[] rows = new int[changed.size()];
+        int count = 0;
+        for (Sensor sensor : changed) {
+            Integer row = rowsById.get(sensor.getSensorId());
+            if (row == null) {
+                return false;
+            }
+            rows[count++] = row;
+        }
+        Arrays.sort(rows, 0, count);
+        int i = 0;
+        while (i < count) {
+            int first = rows[i];
+            int last = first;
+            while (++i < count && rows[i] <= last + 1) {
+                last = rows[i];
+            }
+            fireTableRowsUpdated(first, last);
+        }
+        return true;
+    }
+
+    /**
+     * Repaints every row, for changes that may have touched any sensor.
+     */
+    public void allSensorsChanged() {
+        if (!sensors.isEmpty()) {
+            fireTableRowsUpdated(0, sensors.size() - 1);
+        }
+    }
+
+    public Sensor getSensorAt(int row) {
+        return sensors.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor s = sensors.get(row);
+        return switch (column) {
+            case NAME_COLUMN -> String.format("%s(%s)", s.getName(), s.getSensorType().toString());
+            case STATUS_COLUMN -> s.getActive() ? "Active" : "Inactive";
+            case TOGGLE_COLUMN -> s.getActive() ? "Deactivate" : "Activate";
+            case REMOVE_COLUMN -> "Remove Sensor";
+            default -> throw new IndexOutOfBoundsException("column " + column);
+        };
+    }
+
+    private void reindex(int fromRow) {
+        if (fromRow == 0) {
+            rowsById.clear();
+        }
+        for (int row = fromRow; row < sensors.size(); row++) {
+            rowsById.put(sensors.get(row).getSensorId(), row);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package catpoint.application;
 
 import catpoint.data.AlarmStatus;
 import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+
+import java.util.Collection;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -10,5 +13,13 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * Called instead of {@link #sensorStatusChanged()} when it is known which sensors changed, so a
+     * listener can update just those. Listeners that don't care which ones get a plain sensorStatusChanged.
+     */
+    default void sensorsChanged(Collection<Sensor> changed) {
+        sensorStatusChanged();
+    }
     void ArmingNotify(ArmingStatus status);
 }
@@ -0,0 +1,147 @@
+package catpoint.camera;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One camera fed into {@link CameraIngestion}, holding at most one frame waiting for detection.
+ *
+ * A new frame replaces the waiting one rather than queueing behind it, so when detection is slower than the
+ * camera the backlog never grows past one frame and the frame that does get analysed is always the newest.
+ */
+public class Camera {
+
+    private final String name;
+    private byte[] latestFrame; //guarded by this
+    private boolean stopped; //guarded by this
+    private Closeable source; //guarded by this
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong framesProcessed = new AtomicLong();
+    private final AtomicLong decodeFailures = new AtomicLong();
+    private final AtomicLong sourceFailures = new AtomicLong();
+    private final AtomicLong detectionFailures = new AtomicLong();
+
+    Camera(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    /**
+     * Frames replaced by a newer one before detection got to them.
+     */
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    /**
+     * Frames handed to the security service.
+     */
+    public long getFramesProcessed() {
+        return framesProcessed.get();
+    }
+
+    /**
+     * Frames that could not be decoded as an image.
+     */
+    public long getDecodeFailures() {
+        return decodeFailures.get();
+    }
+
+    /**
+     * Times the stream or directory could not be opened or broke off.
+     */
+    public long getSourceFailures() {
+        return sourceFailures.get();
+    }
+
+    /**
+     * Frames the security service threw on.
+     */
+    public long getDetectionFailures() {
+        return detectionFailures.get();
+    }
+
+    synchronized void offer(byte[] frame) {
+        framesReceived.incrementAndGet();
+        if (latestFrame != null) {
+            framesDropped.incrementAndGet();
+        }
+        latestFrame = frame;
+        notifyAll();
+    }
+
+    /**
+     * Waits for a frame and takes it.
+     * @return The newest frame, or null once the camera is stopped
+     */
+    synchronized byte[] take() throws InterruptedException {
+        while (latestFrame == null && !stopped) {
+            wait();
+        }
+        if (stopped) {
+            return null;
+        }
+        byte[] frame = latestFrame;
+        latestFrame = null;
+        return frame;
+    }
+
+    synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Remembers what the reader is blocked on, so stopping the camera can close it.
+     * @return False if the camera was already stopped, in which case the source has been closed
+     */
+    synchronized boolean setSource(Closeable source) {
+        if (stopped) {
+            closeQuietly(source);
+            return false;
+        }
+        this.source = source;
+        return true;
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        closeQuietly(source);
+        notifyAll();
+    }
+
+    void frameProcessed() {
+        framesProcessed.incrementAndGet();
+    }
+
+    void decodeFailed() {
+        decodeFailures.incrementAndGet();
+    }
+
+    void detectionFailed() {
+        detectionFailures.incrementAndGet();
+    }
+
+    void sourceFailed() {
+        sourceFailures.incrementAndGet();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //stopping anyway
+        }
+    }
+}
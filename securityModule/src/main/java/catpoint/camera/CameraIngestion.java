@@ -0,0 +1,276 @@
+package catpoint.camera;
+
+import catpoint.service.SecurityService;
+import catpoint.service.TaskThreads;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds frames from cameras into {@link SecurityService#processImage}.
+ *
+ * A camera is either an MJPEG byte stream, read from a file, a socket or any other {@link InputStream}, or a
+ * directory that frames are dropped into as image files, watched with a {@link WatchService}. Every camera
+ * gets two threads, virtual where the runtime supports them: a reader that cuts frames out of its source
+ * and a detector that decodes the newest frame and hands it to the service, at most once per interval.
+ * One thread per camera would be cheaper, but then a camera's source would go unread while a detection
+ * runs, whereas with a separate reader frames that arrive meanwhile replace each other, see {@link Camera}.
+ *
+ * A watched directory may see a file before whoever writes it has finished. Files are only passed on once
+ * they end in the JPEG or PNG end marker; an incomplete one is skipped and picked up again from the
+ * modification event its writer causes when it finishes. Writers that write to a temporary name and then
+ * rename the file into the directory never expose a partial frame in the first place and are preferable.
+ *
+ * Frames from different cameras reach the service concurrently, so it must tolerate concurrent calls, as
+ * {@link catpoint.service.ConcurrentSecurityService} does.
+ */
+public class CameraIngestion implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_FRAME_BYTES = 8 * 1024 * 1024;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    /**
+     * Opens a camera's byte stream, again after each disconnect if the camera reconnects.
+     */
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private final SecurityService securityService;
+    private final long minIntervalNanos;
+    private final int maxFrameBytes;
+    private final ExecutorService threads = TaskThreads.newThreadPerTaskExecutor("catpoint-camera");
+    private final List<Camera> cameras = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param minInterval Shortest time between two frames of one camera going to detection
+     */
+    public CameraIngestion(SecurityService securityService, Duration minInterval) {
+        this(securityService, minInterval, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    public CameraIngestion(SecurityService securityService, Duration minInterval, int maxFrameBytes) {
+        this.securityService = securityService;
+        this.minIntervalNanos = minInterval.toNanos();
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Reads an MJPEG stream from a file once, until its end.
+     */
+    public Camera addMjpegFile(String name, Path file) {
+        return addMjpegStream(name, () -> Files.newInputStream(file), false);
+    }
+
+    /**
+     * Reads an MJPEG stream from a socket, for example a camera's HTTP stream proxied to a local port.
+     * The socket is reopened whenever it disconnects.
+     */
+    public Camera addMjpegSocket(String name, InetSocketAddress address) {
+        return addMjpegStream(name, () -> {
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, 5000);
+                return socket.getInputStream();
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }, true);
+    }
+
+    /**
+     * @param reconnect True to reopen the stream after it ends or fails, false to stop reading
+     */
+    public Camera addMjpegStream(String name, StreamOpener opener, boolean reconnect) {
+        Camera camera = register(name);
+        threads.execute(() -> readStream(camera, opener, reconnect));
+        return camera;
+    }
+
+    /**
+     * Watches a directory for new or rewritten JPEG and PNG files. Files already there are ignored.
+     */
+    public Camera addFrameDirectory(String name, Path directory) {
+        WatchService watchService;
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to watch " + directory, e);
+        }
+        Camera camera = register(name);
+        camera.setSource(watchService);
+        threads.execute(() -> watchDirectory(camera, directory, watchService));
+        return camera;
+    }
+
+    public List<Camera> getCameras() {
+        return List.copyOf(cameras);
+    }
+
+    /**
+     * Stops every camera, closing its source, and waits briefly for detections in progress.
+     */
+    @Override
+    public void close() {
+        cameras.forEach(Camera::stop);
+        threads.shutdown();
+        try {
+            if (!threads.awaitTermination(5, TimeUnit.SECONDS)) {
+                threads.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            threads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Camera register(String name) {
+        Camera camera = new Camera(name);
+        cameras.add(camera);
+        threads.execute(() -> detect(camera));
+        return camera;
+    }
+
+    private void readStream(Camera camera, StreamOpener opener, boolean reconnect) {
+        byte[] buffer = new byte[16 * 1024];
+        MjpegParser parser = new MjpegParser(camera::offer, maxFrameBytes);
+        while (!camera.isStopped()) {
+            try (InputStream in = opener.open()) {
+                if (!camera.setSource(in)) {
+                    return;
+                }
+                //a frame cut off by the last disconnect must not swallow the start of this stream
+                parser.reset();
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    parser.feed(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                if (!camera.isStopped()) {
+                    camera.sourceFailed();
+                }
+            }
+            if (!reconnect) {
+                return;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void watchDirectory(Camera camera, Path directory, WatchService watchService) {
+        try {
+            while (!camera.isStopped()) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    if (isImageFile(file)) {
+                        try {
+                            byte[] frame = Files.readAllBytes(file);
+                            if (isComplete(frame)) {
+                                camera.offer(frame);
+                            }
+                        } catch (IOException e) {
+                            camera.sourceFailed(); //removed again or unreadable
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    camera.sourceFailed(); //the directory is gone
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //stopped
+        }
+    }
+
+    private void detect(Camera camera) {
+        try {
+            byte[] frame;
+            while ((frame = camera.take()) != null) {
+                long started = System.nanoTime();
+                BufferedImage image = decode(frame);
+                if (image == null) {
+                    camera.decodeFailed();
+                    continue;
+                }
+                try {
+                    securityService.processImage(image);
+                    camera.frameProcessed();
+                } catch (RuntimeException e) {
+                    camera.detectionFailed();
+                }
+                long wait = minIntervalNanos - (System.nanoTime() - started);
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            //stopped
+        }
+    }
+
+    private static BufferedImage decode(byte[] frame) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(frame));
+        } catch (IOException | RuntimeException e) {
+            //some decoders throw unchecked exceptions on corrupt data
+            return null;
+        }
+    }
+
+    /**
+     * @return False if the frame is empty or a JPEG or PNG without its end marker, meaning it is still being
+     * written
+     */
+    static boolean isComplete(byte[] frame) {
+        int n = frame.length;
+        if (n < 8) {
+            //too short to even tell the format, e.g. created but not written yet
+            return false;
+        }
+        if ((frame[0] & 0xFF) == 0xFF && (frame[1] & 0xFF) == 0xD8) {
+            //the end-of-image marker can't occur inside a JPEG's compressed data, where 0xFF bytes are stuffed
+            return (frame[n - 2] & 0xFF) == 0xFF && (frame[n - 1] & 0xFF) == 0xD9;
+        }
+        if ((frame[0] & 0xFF) == 0x89 && frame[1] == 'P' && frame[2] == 'N' && frame[3] == 'G') {
+            //a PNG ends with the IEND chunk: its type and then 4 bytes of CRC
+            return n >= 20 && frame[n - 8] == 'I' && frame[n - 7] == 'E' && frame[n - 6] == 'N' && frame[n - 5] == 'D';
+        }
+        //anything else is up to the decoder
+        return true;
+    }
+
+    private static boolean isImageFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png");
+    }
+}
@@ -0,0 +1,227 @@
+package catpoint.camera;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser that cuts JPEG frames out of an MJPEG byte stream fed to it in chunks of any size.
+ *
+ * It doesn't rely on multipart boundaries or Content-Length headers, which cameras get wrong often enough.
+ * Instead it follows the JPEG structure itself: bytes are skipped until a start-of-image marker, the
+ * marker segments are walked by their lengths, and inside compressed scan data only an unstuffed marker
+ * can end the scan, so an end-of-image marker ends the frame even when a thumbnail or stray 0xFFD9 sequence
+ * appears in a header. Frames larger than the limit are abandoned and the parser looks for the next one.
+ * A start-of-image marker where a marker of the current frame was expected means that frame was cut off,
+ * so it is abandoned and the new one parsed instead.
+ */
+public class MjpegParser {
+
+    private enum State { SEEK_SOI, MARKER, MARKER_CODE, SEGMENT_LENGTH, SEGMENT_BODY, SCAN_DATA, SCAN_MARKER }
+
+    private final Consumer<byte[]> frameHandler;
+    private final int maxFrameBytes;
+    private byte[] frame = new byte[64 * 1024];
+    private int frameLength;
+    private State state = State.SEEK_SOI;
+    private boolean previousWasFf;
+    private int lengthBytesRead;
+    private int segmentRemaining;
+    private boolean segmentIsScanHeader;
+    private long framesParsed;
+    private long framesAbandoned;
+
+    /**
+     * @param frameHandler Receives each complete frame, as a fresh array it may keep
+     */
+    public MjpegParser(Consumer<byte[]> frameHandler, int maxFrameBytes) {
+        this.frameHandler = frameHandler;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            switch (state) {
+                case SEEK_SOI -> {
+                    if (previousWasFf && b == (byte) 0xD8) {
+                        frameLength = 0;
+                        append((byte) 0xFF);
+                        append(b);
+                        state = State.MARKER;
+                    }
+                    previousWasFf = b == (byte) 0xFF;
+                }
+                case MARKER -> {
+                    //expecting the 0xFF that starts the next marker segment
+                    if (b != (byte) 0xFF) {
+                        abandon();
+                        continue;
+                    }
+                    if (!append(b)) {
+                        continue;
+                    }
+                    state = State.MARKER_CODE;
+                }
+                case MARKER_CODE -> {
+                    if (!append(b)) {
+                        continue;
+                    }
+                    int code = b & 0xFF;
+                    if (code == 0xFF) {
+                        continue; //fill byte
+                    } else if (code == 0xD9) {
+                        emit();
+                    } else if (code == 0xD8) {
+                        restartFrame();
+                    } else if (code == 0x01 || (code >= 0xD0 && code <= 0xD7)) {
+                        state = State.MARKER; //markers without a length
+                    } else {
+                        segmentIsScanHeader = code == 0xDA;
+                        lengthBytesRead = 0;
+                        segmentRemaining = 0;
+                        state = State.SEGMENT_LENGTH;
+                    }
+                }
+                case SEGMENT_LENGTH -> {
+                    if (!append(b)) {
+                        continue;
+                    }
+                    segmentRemaining = (segmentRemaining << 8) | (b & 0xFF);
+                    if (++lengthBytesRead == 2) {
+                        segmentRemaining -= 2;
+                        if (segmentRemaining < 0) {
+                            abandon();
+                        } else if (segmentRemaining == 0) {
+                            afterSegment();
+                        } else {
+                            state = State.SEGMENT_BODY;
+                        }
+                    }
+                }
+                case SEGMENT_BODY -> {
+                    int run = Math.min(segmentRemaining, end - i);
+                    if (!appendRun(bytes, i, run)) {
+                        continue;
+                    }
+                    i += run - 1;
+                    segmentRemaining -= run;
+                    if (segmentRemaining == 0) {
+                        afterSegment();
+                    }
+                }
+                case SCAN_DATA -> {
+                    if (!append(b)) {
+                        continue;
+                    }
+                    if (b == (byte) 0xFF) {
+                        state = State.SCAN_MARKER;
+                    }
+                }
+                case SCAN_MARKER -> {
+                    if (!append(b)) {
+                        continue;
+                    }
+                    int code = b & 0xFF;
+                    if (code == 0x00 || (code >= 0xD0 && code <= 0xD7)) {
+                        state = State.SCAN_DATA; //stuffed byte or restart marker
+                    } else if (code == 0xD9) {
+                        emit();
+                    } else if (code == 0xD8) {
+                        restartFrame();
+                    } else if (code != 0xFF) {
+                        //a table or the next scan of a progressive image, its length follows
+                        segmentIsScanHeader = code == 0xDA;
+                        lengthBytesRead = 0;
+                        segmentRemaining = 0;
+                        state = State.SEGMENT_LENGTH;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops any partly parsed frame, for when the bytes that follow come from a new connection.
+     */
+    public void reset() {
+        if (state != State.SEEK_SOI) {
+            framesAbandoned++;
+        }
+        frameLength = 0;
+        previousWasFf = false;
+        state = State.SEEK_SOI;
+    }
+
+    public long getFramesParsed() {
+        return framesParsed;
+    }
+
+    /**
+     * Frames given up on because they were malformed or over the size limit.
+     */
+    public long getFramesAbandoned() {
+        return framesAbandoned;
+    }
+
+    private void afterSegment() {
+        state = segmentIsScanHeader ? State.SCAN_DATA : State.MARKER;
+    }
+
+    private void emit() {
+        frameHandler.accept(Arrays.copyOf(frame, frameLength));
+        framesParsed++;
+        frameLength = 0;
+        previousWasFf = false;
+        state = State.SEEK_SOI;
+    }
+
+    private void abandon() {
+        framesAbandoned++;
+        frameLength = 0;
+        previousWasFf = false;
+        state = State.SEEK_SOI;
+    }
+
+    /**
+     * Abandons the current frame in favour of the one whose start-of-image marker was just read.
+     */
+    private void restartFrame() {
+        abandon();
+        append((byte) 0xFF);
+        append((byte) 0xD8);
+        state = State.MARKER;
+    }
+
+    private boolean append(byte b) {
+        if (!ensureCapacity(1)) {
+            return false;
+        }
+        frame[frameLength++] = b;
+        return true;
+    }
+
+    private boolean appendRun(byte[] bytes, int offset, int length) {
+        if (!ensureCapacity(length)) {
+            return false;
+        }
+        System.arraycopy(bytes, offset, frame, frameLength, length);
+        frameLength += length;
+        return true;
+    }
+
+    /**
+     * Grows the frame buffer, or abandons the frame if it would pass the size limit.
+     */
+    private boolean ensureCapacity(int extra) {
+        int needed = frameLength + extra;
+        if (needed > maxFrameBytes) {
+            abandon();
+            return false;
+        }
+        if (needed > frame.length) {
+            frame = Arrays.copyOf(frame, Math.min(maxFrameBytes, Math.max(needed, frame.length * 2)));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,211 @@
+package catpoint.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * JSON encoding of the catpoint data classes with hand-written {@link TypeAdapter}s, so sensors and
+ * statuses are written and read without Gson reflecting over {@code catpoint.data}.
+ *
+ * A sensor keeps the field names the reflective encoding used, but its id is written as 22 characters of
+ * unpadded base64url rather than the 36 character canonical form and its activation as a plain boolean.
+ * Ids in the canonical form are still read, so state stored before this encoding loads unchanged.
+ */
+public final class CatpointGson {
+
+    private static final TypeAdapter<UUID> UUID_ADAPTER = new UuidAdapter().nullSafe();
+    private static final TypeAdapter<Sensor> SENSOR_ADAPTER = new SensorAdapter().nullSafe();
+
+    /** Gson with the catpoint adapters registered. Other types are still handled reflectively. */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(UUID.class, UUID_ADAPTER)
+            .registerTypeAdapter(Sensor.class, SENSOR_ADAPTER)
+            .registerTypeAdapter(AlarmStatus.class, new EnumAdapter<>(AlarmStatus.class).nullSafe())
+            .registerTypeAdapter(ArmingStatus.class, new EnumAdapter<>(ArmingStatus.class).nullSafe())
+            .registerTypeAdapter(SensorType.class, new EnumAdapter<>(SensorType.class).nullSafe())
+            .create();
+
+    private CatpointGson() {
+    }
+
+    public static String sensorsToJson(Collection<Sensor> sensors) {
+        StringWriter out = new StringWriter(sensors.size() * 96);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginArray();
+            for (Sensor sensor : sensors) {
+                SENSOR_ADAPTER.write(writer, sensor);
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write sensors", e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads a JSON array of sensors written by this class or by reflective Gson, skipping unknown fields.
+     */
+    public static Set<Sensor> sensorsFromJson(String json) {
+        Set<Sensor> sensors = new TreeSet<>();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                sensors.add(SENSOR_ADAPTER.read(reader));
+            }
+            reader.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read sensors", e);
+        }
+        return sensors;
+    }
+
+    /**
+     * Packs the two halves of the id into 16 bytes of base64url.
+     */
+    public static String compactUuid(UUID uuid) {
+        byte[] bytes = new byte[16];
+        putLong(bytes, 0, uuid.getMostSignificantBits());
+        putLong(bytes, 8, uuid.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Reads an id in either the compact or the canonical form.
+     * @throws JsonParseException if it is neither
+     */
+    public static UUID parseUuid(String value) {
+        if (value.length() == 36) {
+            try {
+                return UUID.fromString(value);
+            } catch (IllegalArgumentException e) {
+                throw new JsonParseException("Malformed sensor id " + value, e);
+            }
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Malformed sensor id " + value, e);
+        }
+        if (bytes.length != 16) {
+            throw new JsonParseException("Malformed sensor id " + value);
+        }
+        return new UUID(getLong(bytes, 0), getLong(bytes, 8));
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static class UuidAdapter extends TypeAdapter<UUID> {
+        @Override
+        public void write(JsonWriter out, UUID value) throws IOException {
+            out.value(compactUuid(value));
+        }
+
+        @Override
+        public UUID read(JsonReader in) throws IOException {
+            return parseUuid(in.nextString());
+        }
+    }
+
+    private static class SensorAdapter extends TypeAdapter<Sensor> {
+        @Override
+        public void write(JsonWriter out, Sensor sensor) throws IOException {
+            out.beginObject();
+            if (sensor.getSensorId() != null) {
+                out.name("sensorId").value(compactUuid(sensor.getSensorId()));
+            }
+            if (sensor.getName() != null) {
+                out.name("name").value(sensor.getName());
+            }
+            if (sensor.getActive() != null) {
+                out.name("active").value(sensor.getActive().booleanValue());
+            }
+            if (sensor.getSensorType() != null) {
+                out.name("sensorType").value(sensor.getSensorType().name());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Sensor read(JsonReader in) throws IOException {
+            Sensor sensor = new Sensor();
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "sensorId" -> sensor.setSensorId(parseUuid(in.nextString()));
+                    case "name" -> sensor.setName(in.nextString());
+                    case "active" -> sensor.setActive(in.nextBoolean() ? Boolean.TRUE : Boolean.FALSE);
+                    case "sensorType" -> sensor.setSensorType(SensorType.valueOf(in.nextString()));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return sensor;
+        }
+    }
+
+    /**
+     * Writes an enum constant by name and reads it back through a prebuilt lookup table.
+     */
+    private static class EnumAdapter<E extends Enum<E>> extends TypeAdapter<E> {
+        private final Class<E> type;
+        private final Map<String, E> byName = new HashMap<>();
+
+        EnumAdapter(Class<E> type) {
+            this.type = type;
+            for (E constant : type.getEnumConstants()) {
+                byName.put(constant.name(), constant);
+            }
+        }
+
+        @Override
+        public void write(JsonWriter out, E value) throws IOException {
+            out.value(value.name());
+        }
+
+        @Override
+        public E read(JsonReader in) throws IOException {
+            String name = in.nextString();
+            E constant = byName.get(name);
+            if (constant == null) {
+                throw new JsonParseException("Unknown " + type.getSimpleName() + " " + name);
+            }
+            return constant;
+        }
+    }
+}
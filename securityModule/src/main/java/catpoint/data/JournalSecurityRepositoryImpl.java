@@ -0,0 +1,345 @@
+package catpoint.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository implementation that persists every state change as a small entry appended to a
+ * journal file, rather than reserializing the whole sensor set on each change like
+ * {@link PretendDatabaseSecurityRepositoryImpl} does. Appends are forced to disk in batches,
+ * and once the journal grows past a threshold it is compacted into a snapshot file.
+ *
+ * On startup the snapshot is loaded and the journal is replayed on top of it. Every entry
+ * carries the full new state of the thing it describes, so replaying an entry twice is harmless.
+ */
+public class JournalSecurityRepositoryImpl implements SecurityRepository, Closeable {
+
+    private static final String SNAPSHOT_FILE = "catpoint-snapshot.json";
+    private static final String JOURNAL_FILE = "catpoint-journal.log";
+    private static final int DEFAULT_SYNC_BATCH_SIZE = 16;
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+    private static final Gson gson = CatpointGson.GSON; //sensors and statuses go through its adapters, entries and snapshots reflectively
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final int syncBatchSize;
+    private final int compactionThreshold;
+
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private final Map<UUID, Sensor> sensorsById = new HashMap<>();
+    private final SensorStateIndex sensorStateIndex = new SensorStateIndex();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+    private boolean catStatus;
+
+    private FileChannel journal;
+    private int unsyncedEntries;
+    private int journalEntries;
+
+    public JournalSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_SYNC_BATCH_SIZE, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param directory Directory holding the snapshot and journal files. Created if missing.
+     * @param syncBatchSize Number of appended entries between two forced writes to disk. 1 forces every entry.
+     * @param compactionThreshold Number of journal entries after which the journal is folded into the snapshot
+     */
+    public JournalSecurityRepositoryImpl(Path directory, int syncBatchSize, int compactionThreshold) {
+        if (syncBatchSize < 1 || compactionThreshold < 1) {
+            throw new IllegalArgumentException("syncBatchSize and compactionThreshold must be positive");
+        }
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.journalFile = directory.resolve(JOURNAL_FILE);
+        this.syncBatchSize = syncBatchSize;
+        this.compactionThreshold = compactionThreshold;
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot();
+            replayJournal();
+            journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open security journal in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        putSensor(sensor);
+        append(JournalEntry.sensor(JournalEntry.Type.SENSOR_ADDED, sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        dropSensor(sensor.getSensorId());
+        append(JournalEntry.sensorRemoved(sensor.getSensorId()));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        putSensor(sensor);
+        append(JournalEntry.sensor(JournalEntry.Type.SENSOR_UPDATED, sensor));
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        if (this.alarmStatus == alarmStatus) {
+            return;
+        }
+        this.alarmStatus = alarmStatus;
+        append(JournalEntry.alarmStatus(alarmStatus));
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        if (this.armingStatus == armingStatus) {
+            return;
+        }
+        this.armingStatus = armingStatus;
+        append(JournalEntry.armingStatus(armingStatus));
+    }
+
+    @Override
+    public synchronized void setCatStatus(boolean catStatus) {
+        this.catStatus = catStatus;
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public SensorStateIndex getSensorStateIndex() {
+        return sensorStateIndex;
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public synchronized boolean getCatStatus() {
+        return catStatus;
+    }
+
+    /**
+     * Forces any appended but not yet synced journal entries to disk.
+     */
+    public synchronized void sync() {
+        try {
+            journal.force(false);
+            unsyncedEntries = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to sync security journal", ioe);
+        }
+    }
+
+    /**
+     * Writes the current state into a new snapshot and empties the journal. The snapshot is
+     * written to a temporary file and moved into place, so a crash never leaves a half-written snapshot.
+     */
+    public synchronized void compact() {
+        try {
+            Path tmp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            byte[] bytes = gson.toJson(new Snapshot(alarmStatus, armingStatus, new ArrayList<>(sensors))).getBytes(StandardCharsets.UTF_8);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, ByteBuffer.wrap(bytes));
+                out.force(true);
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.truncate(0);
+            journal.force(true);
+            journalEntries = 0;
+            unsyncedEntries = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to compact security journal", ioe);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!journal.isOpen()) {
+            return;
+        }
+        sync();
+        try {
+            journal.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close security journal", ioe);
+        }
+    }
+
+    private void append(JournalEntry entry) {
+        byte[] line = (gson.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            writeFully(journal, ByteBuffer.wrap(line));
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to append to security journal", ioe);
+        }
+        if (++unsyncedEntries >= syncBatchSize) {
+            sync();
+        }
+        if (++journalEntries >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private void putSensor(Sensor sensor) {
+        Sensor previous = sensorsById.put(sensor.getSensorId(), sensor);
+        if (previous != null) {
+            sensors.remove(previous);
+        }
+        sensors.add(sensor);
+        sensorStateIndex.add(sensor);
+    }
+
+    private void dropSensor(UUID sensorId) {
+        Sensor previous = sensorsById.remove(sensorId);
+        if (previous != null) {
+            sensors.remove(previous);
+            sensorStateIndex.remove(previous);
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+            Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+            if (snapshot == null) {
+                return;
+            }
+            alarmStatus = snapshot.alarmStatus;
+            armingStatus = snapshot.armingStatus;
+            snapshot.sensors.forEach(this::putSensor);
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        long validBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JournalEntry entry;
+                try {
+                    entry = gson.fromJson(line, JournalEntry.class);
+                } catch (JsonParseException e) {
+                    break; //torn write at the tail of the journal, everything after it is unusable
+                }
+                if (entry == null || entry.type == null) {
+                    break;
+                }
+                apply(entry);
+                journalEntries++;
+                validBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+        if (validBytes < Files.size(journalFile)) {
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+    }
+
+    private void apply(JournalEntry entry) {
+        switch (entry.type) {
+            case SENSOR_ADDED, SENSOR_UPDATED -> putSensor(entry.sensor);
+            case SENSOR_REMOVED -> dropSensor(entry.sensorId);
+            case ALARM_STATUS -> alarmStatus = entry.alarmStatus;
+            case ARMING_STATUS -> armingStatus = entry.armingStatus;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * A single line of the journal. Only the fields relevant to the entry type are set.
+     */
+    private static class JournalEntry {
+        enum Type { SENSOR_ADDED, SENSOR_REMOVED, SENSOR_UPDATED, ALARM_STATUS, ARMING_STATUS }
+
+        private Type type;
+        private Sensor sensor;
+        private UUID sensorId;
+        private AlarmStatus alarmStatus;
+        private ArmingStatus armingStatus;
+
+        static JournalEntry sensor(Type type, Sensor sensor) {
+            JournalEntry entry = new JournalEntry();
+            entry.type = type;
+            entry.sensor = sensor;
+            return entry;
+        }
+
+        static JournalEntry sensorRemoved(UUID sensorId) {
+            JournalEntry entry = new JournalEntry();
+            entry.type = Type.SENSOR_REMOVED;
+            entry.sensorId = sensorId;
+            return entry;
+        }
+
+        static JournalEntry alarmStatus(AlarmStatus alarmStatus) {
+            JournalEntry entry = new JournalEntry();
+            entry.type = Type.ALARM_STATUS;
+            entry.alarmStatus = alarmStatus;
+            return entry;
+        }
+
+        static JournalEntry armingStatus(ArmingStatus armingStatus) {
+            JournalEntry entry = new JournalEntry();
+            entry.type = Type.ARMING_STATUS;
+            entry.armingStatus = armingStatus;
+            return entry;
+        }
+    }
+
+    /**
+     * Full system state written during compaction.
+     */
+    private static class Snapshot {
+        private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+        private List<Sensor> sensors = new ArrayList<>();
+
+        Snapshot(AlarmStatus alarmStatus, ArmingStatus armingStatus, List<Sensor> sensors) {
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            this.sensors = sensors;
+        }
+    }
+}
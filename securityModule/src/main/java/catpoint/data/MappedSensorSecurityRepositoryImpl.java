@@ -0,0 +1,313 @@
+package catpoint.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository implementation that keeps sensors as fixed-width binary records in a memory-mapped
+ * file. A UUID to slot index lets every update go straight to the sensor's record, so toggling a
+ * sensor is a single byte write, and startup is a scan over the mapped records instead of a JSON parse.
+ *
+ * File layout: a {@value #HEADER_SIZE} byte header holding the alarm and arming status, followed by
+ * {@value #RECORD_SIZE} byte records of the form
+ * [in use][active][sensor type][name length][id msb][id lsb][name bytes, UTF-8].
+ * Names longer than {@value #MAX_NAME_BYTES} bytes are truncated.
+ */
+public class MappedSensorSecurityRepositoryImpl implements SecurityRepository, Closeable {
+
+    private static final int MAGIC = 0x43415450; //"CATP"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 128;
+    static final int MAX_NAME_BYTES = RECORD_SIZE - 20;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    //header offsets
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int ALARM_OFFSET = 12;
+    private static final int ARMING_OFFSET = 13;
+
+    //record offsets
+    private static final int IN_USE_OFFSET = 0;
+    private static final int ACTIVE_OFFSET = 1;
+    private static final int TYPE_OFFSET = 2;
+    private static final int NAME_LENGTH_OFFSET = 3;
+    private static final int MSB_OFFSET = 4;
+    private static final int LSB_OFFSET = 12;
+    private static final int NAME_OFFSET = 20;
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private final Map<UUID, Integer> slotsById = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final SensorStateIndex sensorStateIndex = new SensorStateIndex();
+    private Sensor[] sensorsBySlot;
+    private String[] namesBySlot;
+    private boolean catStatus;
+
+    public MappedSensorSecurityRepositoryImpl(Path file) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_SIZE) {
+                initialize(DEFAULT_CAPACITY);
+            } else {
+                load();
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to map sensor store " + file, ioe);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        if (slotsById.containsKey(sensor.getSensorId())) {
+            updateSensor(sensor);
+            return;
+        }
+        int slot = freeSlots.isEmpty() ? grow() : freeSlots.pop();
+        writeRecord(slot, sensor);
+        slotsById.put(sensor.getSensorId(), slot);
+        sensorsBySlot[slot] = sensor;
+        sensors.add(sensor);
+        sensorStateIndex.add(sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        Integer slot = slotsById.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        buffer.put(recordOffset(slot) + IN_USE_OFFSET, (byte) 0);
+        sensors.remove(sensorsBySlot[slot]);
+        sensorStateIndex.remove(sensor);
+        sensorsBySlot[slot] = null;
+        namesBySlot[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        if (slot == null) {
+            addSensor(sensor);
+            return;
+        }
+        int offset = recordOffset(slot);
+        boolean renamed = !sensor.getName().equals(namesBySlot[slot])
+                || buffer.get(offset + TYPE_OFFSET) != (byte) sensor.getSensorType().ordinal();
+        if (renamed) {
+            //name and type are part of the display ordering, so the sensor needs re-sorting as well
+            sensors.remove(sensorsBySlot[slot]);
+            writeRecord(slot, sensor);
+            sensors.add(sensor);
+        } else {
+            buffer.put(offset + ACTIVE_OFFSET, toByte(sensor.getActive()));
+        }
+        sensorsBySlot[slot] = sensor;
+        sensorStateIndex.update(sensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        buffer.put(ALARM_OFFSET, (byte) alarmStatus.ordinal());
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        buffer.put(ARMING_OFFSET, (byte) armingStatus.ordinal());
+    }
+
+    @Override
+    public synchronized void setCatStatus(boolean catStatus) {
+        this.catStatus = catStatus;
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public synchronized SensorStateIndex getSensorStateIndex() {
+        return sensorStateIndex;
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return ALARM_STATUSES[buffer.get(ALARM_OFFSET)];
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return ARMING_STATUSES[buffer.get(ARMING_OFFSET)];
+    }
+
+    @Override
+    public synchronized boolean getCatStatus() {
+        return catStatus;
+    }
+
+    /**
+     * Flushes modified pages of the mapped file to disk.
+     */
+    public synchronized void sync() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        sync();
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close sensor store", ioe);
+        }
+    }
+
+    private void initialize(int initialCapacity) throws IOException {
+        map(initialCapacity);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, initialCapacity);
+        buffer.put(ALARM_OFFSET, (byte) AlarmStatus.NO_ALARM.ordinal());
+        buffer.put(ARMING_OFFSET, (byte) ArmingStatus.DISARMED.ordinal());
+        for (int slot = initialCapacity - 1; slot >= 0; slot--) {
+            freeSlots.push(slot);
+        }
+    }
+
+    private void load() throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Not a sensor store file");
+        }
+        map(header.getInt(CAPACITY_OFFSET));
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            int offset = recordOffset(slot);
+            if (buffer.get(offset + IN_USE_OFFSET) == 0) {
+                freeSlots.push(slot);
+                continue;
+            }
+            Sensor sensor = readRecord(offset);
+            slotsById.put(sensor.getSensorId(), slot);
+            sensorsBySlot[slot] = sensor;
+            namesBySlot[slot] = sensor.getName();
+            sensors.add(sensor);
+            sensorStateIndex.add(sensor);
+        }
+    }
+
+    /**
+     * Doubles the number of record slots, remapping the file, and returns the first new slot.
+     */
+    private int grow() {
+        int firstNewSlot = capacity;
+        try {
+            map(capacity * 2);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to grow sensor store", ioe);
+        }
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        for (int slot = capacity - 1; slot > firstNewSlot; slot--) {
+            freeSlots.push(slot);
+        }
+        return firstNewSlot;
+    }
+
+    private void map(int newCapacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+        Sensor[] sensorSlots = new Sensor[newCapacity];
+        String[] nameSlots = new String[newCapacity];
+        if (sensorsBySlot != null) {
+            System.arraycopy(sensorsBySlot, 0, sensorSlots, 0, capacity);
+            System.arraycopy(namesBySlot, 0, nameSlots, 0, capacity);
+        }
+        sensorsBySlot = sensorSlots;
+        namesBySlot = nameSlots;
+        capacity = newCapacity;
+    }
+
+    private void writeRecord(int slot, Sensor sensor) {
+        int offset = recordOffset(slot);
+        byte[] name = truncate(sensor.getName().getBytes(StandardCharsets.UTF_8));
+        buffer.put(offset + ACTIVE_OFFSET, toByte(sensor.getActive()));
+        buffer.put(offset + TYPE_OFFSET, (byte) sensor.getSensorType().ordinal());
+        buffer.put(offset + NAME_LENGTH_OFFSET, (byte) name.length);
+        buffer.putLong(offset + MSB_OFFSET, sensor.getSensorId().getMostSignificantBits());
+        buffer.putLong(offset + LSB_OFFSET, sensor.getSensorId().getLeastSignificantBits());
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(offset + NAME_OFFSET + i, name[i]);
+        }
+        //mark the slot as used last, so a half-written record is never picked up on load
+        buffer.put(offset + IN_USE_OFFSET, (byte) 1);
+        namesBySlot[slot] = sensor.getName();
+    }
+
+    private Sensor readRecord(int offset) {
+        byte[] name = new byte[buffer.get(offset + NAME_LENGTH_OFFSET) & 0xFF];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(offset + NAME_OFFSET + i);
+        }
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(buffer.getLong(offset + MSB_OFFSET), buffer.getLong(offset + LSB_OFFSET)));
+        sensor.setName(new String(name, StandardCharsets.UTF_8));
+        sensor.setSensorType(SENSOR_TYPES[buffer.get(offset + TYPE_OFFSET)]);
+        sensor.setActive(buffer.get(offset + ACTIVE_OFFSET) != 0);
+        return sensor;
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static byte toByte(Boolean active) {
+        return Boolean.TRUE.equals(active) ? (byte) 1 : (byte) 0;
+    }
+
+    /**
+     * Cuts an encoded name down to the record's name field without splitting a multi-byte character.
+     */
+    private static byte[] truncate(byte[] name) {
+        if (name.length <= MAX_NAME_BYTES) {
+            return name;
+        }
+        int length = MAX_NAME_BYTES;
+        while (length > 0 && (name[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] truncated = new byte[length];
+        System.arraycopy(name, 0, truncated, 0, length);
+        return truncated;
+    }
+}
@@ -1,24 +1,60 @@
 package catpoint.data;
 
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
-import service.ImageServiceInterface;
 
-import java.lang.reflect.Type;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * By default every change is written to preferences before the call returns. In
+ * {@link WriteMode#WRITE_BEHIND} mode changes only mark the state dirty, and a background thread writes
+ * the latest state once per flush interval, so a burst of transitions such as a brief PENDING_ALARM costs
+ * one write. The in-memory state is always the authoritative one, and a shutdown hook closes every write-behind
+ * repository still open when the application exits, writing what is dirty and forcing it to the backing store.
+ * All write-behind repositories share one flusher thread and that one hook. Once closed, a repository writes
+ * every change through, so nothing written after {@link #close()} is lost either.
+ *
+ * Sensors are written and read with the streaming adapters in {@link CatpointGson} rather than reflection. Given a
+ * loader {@link Executor} that happens in the background: the alarm and arming status are available straight
+ * away, and anything that needs the sensors waits until {@link #whenSensorsLoaded()} completes.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, Closeable {
 
-    private Set<Sensor> sensors;
-    private AlarmStatus alarmStatus;
-    private ArmingStatus armingStatus;
+    /**
+     * Trade-off between durability and the latency of state changes.
+     */
+    public enum WriteMode {
+        /** Each change is written before the call returns. Nothing is lost, every transition pays for the write. */
+        WRITE_THROUGH,
+        /** Changes are written in the background. Calls return at memory speed, at most one flush interval of changes can be lost on a crash. */
+        WRITE_BEHIND
+    }
+
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    private Set<Sensor> sensors; //written once by the loader, visible to everyone who waited on sensorsLoaded
+    private final CompletableFuture<Void> sensorsLoaded = new CompletableFuture<>();
+    private final SensorStateIndex sensorStateIndex = new SensorStateIndex();
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
     public boolean catStat;
 
     //preference keys
@@ -27,9 +63,44 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
     private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+
+    //shared by every write-behind repository, created along with the hook that closes them on exit
+    private static final Set<PretendDatabaseSecurityRepositoryImpl> openWriteBehind = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService flusher;
+
+    private final WriteMode writeMode;
+    private final long flushIntervalMillis;
+    //what still has to be written in write-behind mode, guarded by this
+    private boolean closed;
+    private boolean sensorsDirty;
+    private boolean alarmStatusDirty;
+    private boolean armingStatusDirty;
+    private boolean flushScheduled;
+    private final Object flushLock = new Object(); //keeps an older flush from landing after a newer one
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(WriteMode.WRITE_THROUGH, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param flushInterval How long changes may stay unwritten in {@link WriteMode#WRITE_BEHIND} mode
+     */
+    public PretendDatabaseSecurityRepositoryImpl(WriteMode writeMode, Duration flushInterval) {
+        this(writeMode, flushInterval, Runnable::run);
+    }
+
+    /**
+     * @param flushInterval How long changes may stay unwritten in {@link WriteMode#WRITE_BEHIND} mode
+     * @param sensorLoader Runs the parsing of the stored sensors. Pass a background executor to return
+     *                     before the sensors are loaded.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(WriteMode writeMode, Duration flushInterval, Executor sensorLoader) {
+        this.writeMode = writeMode;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        if (writeMode == WriteMode.WRITE_BEHIND) {
+            startFlusher();
+            openWriteBehind.add(this);
+        }
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
@@ -37,53 +108,223 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
         String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+        sensorLoader.execute(() -> loadSensors(sensorString));
+    }
+
+    private void loadSensors(String sensorString) {
+        try {
+            Set<Sensor> loaded = sensorString == null ? new TreeSet<>() : CatpointGson.sensorsFromJson(sensorString);
+            loaded.forEach(sensorStateIndex::add);
+            sensors = loaded;
+            sensorsLoaded.complete(null);
+        } catch (RuntimeException e) {
+            sensorsLoaded.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Completes once the stored sensors have been read, or exceptionally if they couldn't be.
+     */
+    public CompletionStage<Void> whenSensorsLoaded() {
+        return sensorsLoaded.minimalCompletionStage();
+    }
+
+    private void awaitSensors() {
+        try {
+            sensorsLoaded.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Unable to load stored sensors", e.getCause());
         }
     }
 
     @Override
-    public void addSensor(Sensor sensor) {
+    public synchronized void addSensor(Sensor sensor) {
+        awaitSensors();
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorStateIndex.add(sensor);
+        sensorsChanged();
     }
 
     @Override
-    public void removeSensor(Sensor sensor) {
+    public synchronized void removeSensor(Sensor sensor) {
+        awaitSensors();
         sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorStateIndex.remove(sensor);
+        sensorsChanged();
     }
 
     @Override
-    public void updateSensor(Sensor sensor) {
+    public synchronized void updateSensor(Sensor sensor) {
+        awaitSensors();
         sensors.remove(sensor);
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorStateIndex.update(sensor);
+        sensorsChanged();
+    }
+
+    /**
+     * Adds all sensors, serializing the sensor list to preferences once rather than once per sensor.
+     */
+    @Override
+    public synchronized void addSensors(Collection<Sensor> newSensors) {
+        awaitSensors();
+        for (Sensor sensor : newSensors) {
+            sensors.add(sensor);
+            sensorStateIndex.add(sensor);
+        }
+        sensorsChanged();
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> updatedSensors) {
+        awaitSensors();
+        for (Sensor sensor : updatedSensors) {
+            sensors.remove(sensor);
+            sensors.add(sensor);
+            sensorStateIndex.update(sensor);
+        }
+        sensorsChanged();
     }
 
     @Override
-    public void setAlarmStatus(AlarmStatus alarmStatus) {
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        if (!writesBehind()) {
+            prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        } else {
+            alarmStatusDirty = true;
+            scheduleFlush();
+        }
 
 
     }
 
     @Override
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        if (!writesBehind()) {
+            prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        } else {
+            armingStatusDirty = true;
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Writes any state that is still dirty. The sensor list is copied under the lock but serialized
+     * outside it, so callers are never held up by the JSON encoding.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            writeDirtyState();
+        }
+    }
+
+    private void writeDirtyState() {
+        List<Sensor> sensorsToWrite = null;
+        AlarmStatus alarmToWrite = null;
+        ArmingStatus armingToWrite = null;
+        synchronized (this) {
+            flushScheduled = false;
+            if (sensorsDirty) {
+                sensorsToWrite = new ArrayList<>(sensors);
+                sensorsDirty = false;
+            }
+            if (alarmStatusDirty) {
+                alarmToWrite = alarmStatus;
+                alarmStatusDirty = false;
+            }
+            if (armingStatusDirty) {
+                armingToWrite = armingStatus;
+                armingStatusDirty = false;
+            }
+        }
+        if (sensorsToWrite != null) {
+            prefs.put(SENSORS, CatpointGson.sensorsToJson(sensorsToWrite));
+        }
+        if (alarmToWrite != null) {
+            prefs.put(ALARM_STATUS, alarmToWrite.toString());
+        }
+        if (armingToWrite != null) {
+            prefs.put(ARMING_STATUS, armingToWrite.toString());
+        }
+    }
+
+    /**
+     * @return True if some changes have not been written yet
+     */
+    public synchronized boolean isDirty() {
+        return sensorsDirty || alarmStatusDirty || armingStatusDirty;
+    }
+
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * Writes any pending changes, forces them to the preferences backing store and switches to writing every
+     * later change through. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        openWriteBehind.remove(this);
+        flush();
+        try {
+            prefs.flush();
+        } catch (BackingStoreException e) {
+            throw new IllegalStateException("Unable to write preferences", e);
+        }
+    }
+
+    private boolean writesBehind() {
+        return writeMode == WriteMode.WRITE_BEHIND && !closed;
+    }
+
+    private static synchronized void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catpoint-prefs-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        //the JDK syncs preferences in a hook of its own, in no particular order with this one, so close() forces the write
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> openWriteBehind.forEach(PretendDatabaseSecurityRepositoryImpl::close),
+                "catpoint-prefs-shutdown-flush"));
+    }
+
+    private void sensorsChanged() {
+        if (!writesBehind()) {
+            prefs.put(SENSORS, CatpointGson.sensorsToJson(sensors));
+        } else {
+            sensorsDirty = true;
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public Set<Sensor> getSensors() {
+        awaitSensors();
         return sensors;
     }
 
+    @Override
+    public SensorStateIndex getSensorStateIndex() {
+        awaitSensors();
+        return sensorStateIndex;
+    }
+
     @Override
     public AlarmStatus getAlarmStatus() {
         return alarmStatus;
@@ -2,8 +2,10 @@ package catpoint.data;
 
 import service.ImageServiceInterface;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -20,5 +22,40 @@ public interface SecurityRepository {
     ArmingStatus getArmingStatus();
     boolean getCatStatus();
 
+    /**
+     * Adds many sensors at once. Repositories that can store a batch more cheaply than one sensor at a
+     * time override this.
+     */
+    default void addSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::addSensor);
+    }
+
+    /**
+     * Stores the current state of many sensors at once.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * @return The sensor with the given id, or null if there is none. Repositories that keep sensors by id
+     * override this; the default walks {@link #getSensors()}.
+     */
+    default Sensor getSensor(UUID sensorId) {
+        for (Sensor sensor : getSensors()) {
+            if (sensor.getSensorId().equals(sensorId)) {
+                return sensor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The index of active sensors this repository keeps up to date, or null if it doesn't keep one
+     */
+    default SensorStateIndex getSensorStateIndex() {
+        return null;
+    }
+
 
 }
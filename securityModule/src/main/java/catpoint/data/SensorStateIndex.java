@@ -0,0 +1,164 @@
+package catpoint.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of which sensors are active, so alarm decisions don't have to walk the sensor set.
+ *
+ * Each sensor is given a dense slot id when it is added and its activation is kept as a bit in a
+ * {@code long[]} bitset, next to primitive counters of active sensors overall and per {@link SensorType}.
+ * Asking whether any sensor is active, or how many are, is a field read with no iteration, boxing or
+ * allocation. The index only sees what its repository is told: it reflects each sensor as of its last
+ * {@code addSensor} or {@code updateSensor} call.
+ */
+public class SensorStateIndex {
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final Map<UUID, Integer> slotsById = new HashMap<>();
+    private final int[] activeByType = new int[SENSOR_TYPES.length];
+    private long[] activeBits = new long[1];
+    private SensorType[] typesBySlot = new SensorType[64];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+    private volatile int activeCount;
+
+    /**
+     * Adds a sensor, or refreshes it if it is already indexed.
+     * @return The sensor's slot id
+     */
+    public synchronized int add(Sensor sensor) {
+        Integer existing = slotsById.get(sensor.getSensorId());
+        if (existing != null) {
+            refresh(existing, sensor);
+            return existing;
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (slot >= typesBySlot.length) {
+            typesBySlot = Arrays.copyOf(typesBySlot, typesBySlot.length * 2);
+        }
+        if ((slot >> 6) >= activeBits.length) {
+            activeBits = Arrays.copyOf(activeBits, activeBits.length * 2);
+        }
+        slotsById.put(sensor.getSensorId(), slot);
+        typesBySlot[slot] = sensor.getSensorType();
+        if (Boolean.TRUE.equals(sensor.getActive())) {
+            setActive(slot);
+        }
+        return slot;
+    }
+
+    public synchronized void remove(Sensor sensor) {
+        Integer slot = slotsById.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        clearActive(slot);
+        typesBySlot[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Records the sensor's current activation and type. Sensors that are not indexed are ignored.
+     */
+    public synchronized void update(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        if (slot != null) {
+            refresh(slot, sensor);
+        }
+    }
+
+    public synchronized void clear() {
+        slotsById.clear();
+        Arrays.fill(activeBits, 0L);
+        Arrays.fill(typesBySlot, null);
+        Arrays.fill(activeByType, 0);
+        freeCount = 0;
+        nextSlot = 0;
+        activeCount = 0;
+    }
+
+    /**
+     * @return True if at least one indexed sensor is active
+     */
+    public boolean anyActive() {
+        return activeCount > 0;
+    }
+
+    public int activeCount() {
+        return activeCount;
+    }
+
+    public synchronized int activeCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    public synchronized boolean isActive(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        return slot != null && isActive(slot);
+    }
+
+    /**
+     * @return The sensor's slot id, or -1 if it isn't indexed
+     */
+    public synchronized int slotOf(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        return slot == null ? -1 : slot;
+    }
+
+    public synchronized int size() {
+        return slotsById.size();
+    }
+
+    private void refresh(int slot, Sensor sensor) {
+        SensorType sensorType = sensor.getSensorType();
+        if (sensorType != typesBySlot[slot] && isActive(slot)) {
+            //move the sensor's active count over to its new type
+            clearActive(slot);
+            typesBySlot[slot] = sensorType;
+            setActive(slot);
+        }
+        typesBySlot[slot] = sensorType;
+        if (Boolean.TRUE.equals(sensor.getActive())) {
+            setActive(slot);
+        } else {
+            clearActive(slot);
+        }
+    }
+
+    private boolean isActive(int slot) {
+        return (activeBits[slot >> 6] & (1L << slot)) != 0;
+    }
+
+    private void setActive(int slot) {
+        if (isActive(slot)) {
+            return;
+        }
+        activeBits[slot >> 6] |= 1L << slot;
+        countType(slot, 1);
+        activeCount = activeCount + 1;
+    }
+
+    private void clearActive(int slot) {
+        if (!isActive(slot)) {
+            return;
+        }
+        activeBits[slot >> 6] &= ~(1L << slot);
+        countType(slot, -1);
+        activeCount = activeCount - 1;
+    }
+
+    private void countType(int slot, int delta) {
+        SensorType sensorType = typesBySlot[slot];
+        if (sensorType != null) {
+            activeByType[sensorType.ordinal()] += delta;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package catpoint.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory repository for large sensor fleets.
+ *
+ * Sensors are spread over a power-of-two number of {@link ConcurrentHashMap} shards keyed by sensor id,
+ * so adding, finding and updating a sensor is a hash lookup in one shard instead of a walk down a
+ * {@link TreeSet} comparing names. The sorted set handed out by {@link #getSensors()} is only needed for
+ * display: it is built from the shards on first use and then reused until a sensor is added, removed or
+ * renamed. Activation changes, by far the most common update, never touch it.
+ */
+public class ShardedSecurityRepositoryImpl implements SecurityRepository {
+
+    public static final int DEFAULT_SHARD_COUNT = 16;
+
+    private final Map<UUID, Entry>[] shards;
+    private final int shardMask;
+    private final SensorStateIndex sensorStateIndex = new SensorStateIndex();
+    //bumped after every change to the display ordering, a cached view is only valid for the count it was built at
+    private final AtomicLong orderingChanges = new AtomicLong();
+    private volatile SortedView sortedView;
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+    private volatile boolean catStatus;
+
+    public ShardedSecurityRepositoryImpl() {
+        this(DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * @param requestedShards Minimum number of shards, rounded up to the next power of two
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedSecurityRepositoryImpl(int requestedShards) {
+        if (requestedShards < 1 || requestedShards > (1 << 16)) {
+            throw new IllegalArgumentException("shard count must be between 1 and 65536");
+        }
+        int count = 1;
+        while (count < requestedShards) {
+            count <<= 1;
+        }
+        shards = new Map[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        shardMask = count - 1;
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        insert(sensor);
+        orderingChanges.incrementAndGet();
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        boolean[] removed = new boolean[1];
+        //the index is changed while the shard entry is locked, so a racing update can't re-index the sensor
+        shardFor(sensor.getSensorId()).computeIfPresent(sensor.getSensorId(), (id, entry) -> {
+            sensorStateIndex.remove(sensor);
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            orderingChanges.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        if (store(sensor)) {
+            orderingChanges.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void addSensors(Collection<Sensor> sensors) {
+        for (Sensor sensor : sensors) {
+            insert(sensor);
+        }
+        orderingChanges.incrementAndGet();
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        boolean reorder = false;
+        for (Sensor sensor : sensors) {
+            reorder |= store(sensor);
+        }
+        if (reorder) {
+            orderingChanges.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public void setCatStatus(boolean catStatus) {
+        this.catStatus = catStatus;
+    }
+
+    /**
+     * @return An unmodifiable, display-ordered snapshot of the sensors. The same instance is returned until
+     * a sensor is added, removed or renamed.
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        long version = orderingChanges.get();
+        SortedView view = sortedView;
+        if (view != null && view.version == version) {
+            return view.sensors;
+        }
+        //a change racing with the build leaves the counter past this version, so the view is never served after it
+        TreeSet<Sensor> sorted = new TreeSet<>();
+        for (Map<UUID, Entry> shard : shards) {
+            for (Entry entry : shard.values()) {
+                sorted.add(entry.sensor);
+            }
+        }
+        view = new SortedView(version, Collections.unmodifiableSet(sorted));
+        sortedView = view;
+        return view.sensors;
+    }
+
+    /**
+     * @return The sensor with the given id, or null if there is none
+     */
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        Entry entry = shardFor(sensorId).get(sensorId);
+        return entry == null ? null : entry.sensor;
+    }
+
+    public int getSensorCount() {
+        int count = 0;
+        for (Map<UUID, Entry> shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return Number of sensors in each shard, useful to check the ids spread evenly
+     */
+    public List<Integer> getShardSizes() {
+        List<Integer> sizes = new ArrayList<>(shards.length);
+        for (Map<UUID, Entry> shard : shards) {
+            sizes.add(shard.size());
+        }
+        return sizes;
+    }
+
+    @Override
+    public SensorStateIndex getSensorStateIndex() {
+        return sensorStateIndex;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public boolean getCatStatus() {
+        return catStatus;
+    }
+
+    private Map<UUID, Entry> shardFor(UUID sensorId) {
+        //random UUIDs already have well mixed bits, folding both halves in covers other id schemes too
+        long bits = sensorId.getMostSignificantBits() ^ sensorId.getLeastSignificantBits();
+        int hash = (int) (bits ^ (bits >>> 32));
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+
+    private void insert(Sensor sensor) {
+        shardFor(sensor.getSensorId()).compute(sensor.getSensorId(), (id, entry) -> {
+            sensorStateIndex.add(sensor);
+            return new Entry(sensor);
+        });
+    }
+
+    /**
+     * Stores an updated sensor. Checking and replacing the shard entry is one atomic step, so a sensor
+     * removed meanwhile is not put back; the entry is only replaced when the display ordering is affected.
+     * @return True if the display view needs rebuilding
+     */
+    private boolean store(Sensor sensor) {
+        boolean[] reorder = new boolean[1];
+        shardFor(sensor.getSensorId()).computeIfPresent(sensor.getSensorId(), (id, previous) -> {
+            sensorStateIndex.add(sensor);
+            if (affectsOrdering(previous, sensor)) {
+                reorder[0] = true;
+                return new Entry(sensor);
+            }
+            return previous;
+        });
+        return reorder[0];
+    }
+
+    /**
+     * The display view holds sensor instances sorted by name and type, so it needs rebuilding when a
+     * different instance comes in or the name or type it was sorted by has changed since.
+     */
+    private static boolean affectsOrdering(Entry previous, Sensor sensor) {
+        return previous.sensor != sensor
+                || !previous.name.equals(sensor.getName()) || previous.sensorType != sensor.getSensorType();
+    }
+
+    /**
+     * A sensor along with the name and type it had when it was last stored.
+     */
+    private static final class Entry {
+        private final Sensor sensor;
+        private final String name;
+        private final SensorType sensorType;
+
+        private Entry(Sensor sensor) {
+            this.sensor = sensor;
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType();
+        }
+    }
+
+    /**
+     * A display view along with the ordering change count it was built at.
+     */
+    private static final class SortedView {
+        private final long version;
+        private final Set<Sensor> sensors;
+
+        private SortedView(long version, Set<Sensor> sensors) {
+            this.version = version;
+            this.sensors = sensors;
+        }
+    }
+}
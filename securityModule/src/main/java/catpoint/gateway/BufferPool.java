@@ -0,0 +1,46 @@
+package catpoint.gateway;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Reuses direct buffers of one size so connections coming and going don't allocate. Buffers are handed out
+ * cleared; when the pool is empty a new one is allocated and joins the pool once released.
+ * Not thread-safe, it belongs to the gateway's selector thread.
+ */
+class BufferPool {
+
+    private final int bufferSize;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private int allocated;
+
+    BufferPool(int bufferSize, int preallocate) {
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < preallocate; i++) {
+            free.push(ByteBuffer.allocateDirect(bufferSize));
+            allocated++;
+        }
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated++;
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.push(buffer);
+    }
+
+    int getAllocatedCount() {
+        return allocated;
+    }
+
+    int getFreeCount() {
+        return free.size();
+    }
+}
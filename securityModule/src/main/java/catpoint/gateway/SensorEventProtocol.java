@@ -0,0 +1,47 @@
+package catpoint.gateway;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Wire format of the telemetry gateway. Every frame is an unsigned 16-bit body length followed by the body,
+ * all big-endian. A sensor event body is 26 bytes:
+ *
+ * <pre>
+ * u8   type             1 = sensor event
+ * i64  sensor id        most significant bits
+ * i64  sensor id        least significant bits
+ * u8   state            0 = inactive, 1 = active
+ * i64  timestamp        milliseconds since the epoch, events older than the last one applied are dropped
+ * </pre>
+ *
+ * Over TCP frames follow each other on the stream, over UDP a datagram holds one or more whole frames.
+ */
+public final class SensorEventProtocol {
+
+    public static final byte SENSOR_EVENT = 1;
+    public static final int LENGTH_PREFIX_BYTES = 2;
+    public static final int SENSOR_EVENT_BODY_BYTES = 26;
+    public static final int SENSOR_EVENT_FRAME_BYTES = LENGTH_PREFIX_BYTES + SENSOR_EVENT_BODY_BYTES;
+    /** Longest body a gateway accepts, anything longer is treated as a corrupt stream. */
+    public static final int MAX_BODY_BYTES = 1024;
+
+    private SensorEventProtocol() {
+    }
+
+    /**
+     * Appends one sensor event frame at the buffer's position.
+     */
+    public static void writeSensorEvent(ByteBuffer buffer, UUID sensorId, boolean active, long timestampMillis) {
+        writeSensorEvent(buffer, sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits(), active, timestampMillis);
+    }
+
+    public static void writeSensorEvent(ByteBuffer buffer, long idMostSigBits, long idLeastSigBits, boolean active, long timestampMillis) {
+        buffer.putShort((short) SENSOR_EVENT_BODY_BYTES)
+                .put(SENSOR_EVENT)
+                .putLong(idMostSigBits)
+                .putLong(idLeastSigBits)
+                .put((byte) (active ? 1 : 0))
+                .putLong(timestampMillis);
+    }
+}
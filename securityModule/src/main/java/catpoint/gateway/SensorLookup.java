@@ -0,0 +1,86 @@
+package catpoint.gateway;
+
+import catpoint.data.Sensor;
+
+import java.util.Collection;
+
+/**
+ * Open-addressing table from the two halves of a sensor id to the sensor, so an id read off the wire can be
+ * resolved without building a {@link java.util.UUID}. It also keeps the timestamp of the last event applied
+ * to each sensor. Not thread-safe, it belongs to the gateway's selector thread.
+ */
+class SensorLookup {
+
+    private long[] mostSigBits = new long[0];
+    private long[] leastSigBits = new long[0];
+    private long[] lastTimestamps = new long[0];
+    private Sensor[] sensors = new Sensor[0];
+    private int mask = -1;
+
+    /**
+     * Replaces the table contents, keeping the last timestamps of sensors that are still present.
+     */
+    void rebuild(Collection<Sensor> current) {
+        int capacity = Integer.highestOneBit(Math.max(4, current.size() * 2 - 1)) << 1;
+        long[] newMost = new long[capacity];
+        long[] newLeast = new long[capacity];
+        long[] newTimestamps = new long[capacity];
+        Sensor[] newSensors = new Sensor[capacity];
+        int newMask = capacity - 1;
+        for (Sensor sensor : current) {
+            long most = sensor.getSensorId().getMostSignificantBits();
+            long least = sensor.getSensorId().getLeastSignificantBits();
+            int slot = hash(most, least) & newMask;
+            while (newSensors[slot] != null) {
+                slot = (slot + 1) & newMask;
+            }
+            int previous = find(most, least);
+            newMost[slot] = most;
+            newLeast[slot] = least;
+            newSensors[slot] = sensor;
+            newTimestamps[slot] = previous < 0 ? Long.MIN_VALUE : lastTimestamps[previous];
+        }
+        mostSigBits = newMost;
+        leastSigBits = newLeast;
+        lastTimestamps = newTimestamps;
+        sensors = newSensors;
+        mask = newMask;
+    }
+
+    /**
+     * @return The sensor's slot, or -1 if it isn't in the table
+     */
+    int find(long most, long least) {
+        if (mask < 0) {
+            return -1;
+        }
+        int slot = hash(most, least) & mask;
+        while (sensors[slot] != null) {
+            if (mostSigBits[slot] == most && leastSigBits[slot] == least) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    Sensor sensor(int slot) {
+        return sensors[slot];
+    }
+
+    long lastTimestamp(int slot) {
+        return lastTimestamps[slot];
+    }
+
+    void setLastTimestamp(int slot, long timestamp) {
+        lastTimestamps[slot] = timestamp;
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,332 @@
+package catpoint.gateway;
+
+import catpoint.data.Sensor;
+import catpoint.service.SecurityService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Receives sensor events in the {@link SensorEventProtocol} format over TCP and UDP and feeds them into
+ * {@link SecurityService#changeSensorActivationStatus}.
+ *
+ * One thread runs a {@link Selector} over the listening socket, the UDP channel and every accepted connection.
+ * Each connection reads into a direct buffer borrowed from a {@link BufferPool}, and frames are decoded in place
+ * with absolute reads, so steady traffic allocates nothing per message. Sensor ids are resolved through a
+ * {@link SensorLookup} that is rebuilt when the service's sensor set changes or an unknown id arrives.
+ *
+ * Events are applied on the gateway thread, so the service must tolerate calls from it alongside its other
+ * callers, as {@link catpoint.service.ConcurrentSecurityService} does.
+ */
+public class TelemetryGateway implements Closeable {
+
+    private static final int CONNECTION_BUFFER_BYTES = 64 * 1024;
+    private static final int DATAGRAM_BUFFER_BYTES = 64 * 1024;
+
+    private final SecurityService securityService;
+    private final Selector selector;
+    private final ServerSocketChannel tcpChannel;
+    private final DatagramChannel udpChannel;
+    private final BufferPool bufferPool = new BufferPool(CONNECTION_BUFFER_BYTES, 8);
+    private final ByteBuffer datagramBuffer = ByteBuffer.allocateDirect(DATAGRAM_BUFFER_BYTES);
+    private final SensorLookup sensorLookup = new SensorLookup();
+    private Set<Sensor> knownSensors;
+    private int knownSensorCount = -1;
+    private boolean refreshedThisRound;
+    private volatile boolean refreshRequested;
+    private Thread thread;
+    private volatile boolean running;
+
+    private final AtomicLong eventsApplied = new AtomicLong();
+    private final AtomicLong unknownSensorEvents = new AtomicLong();
+    private final AtomicLong staleEvents = new AtomicLong();
+    private final AtomicLong malformedFrames = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    /**
+     * Binds the channels without starting to serve them.
+     * @param tcpAddress Address to accept TCP connections on, port 0 for any free port
+     * @param udpAddress Address to receive datagrams on, or null for TCP only
+     */
+    public TelemetryGateway(SecurityService securityService, InetSocketAddress tcpAddress, InetSocketAddress udpAddress) {
+        this.securityService = securityService;
+        try {
+            selector = Selector.open();
+            tcpChannel = ServerSocketChannel.open();
+            tcpChannel.bind(tcpAddress, 1024);
+            tcpChannel.configureBlocking(false);
+            tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+            if (udpAddress != null) {
+                udpChannel = DatagramChannel.open();
+                udpChannel.bind(udpAddress);
+                udpChannel.configureBlocking(false);
+                udpChannel.register(selector, SelectionKey.OP_READ);
+            } else {
+                udpChannel = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open gateway channels", e);
+        }
+    }
+
+    /**
+     * Starts the selector thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Gateway already started");
+        }
+        running = true;
+        thread = new Thread(this::run, "catpoint-telemetry-gateway");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public InetSocketAddress getTcpAddress() {
+        return localAddress(tcpChannel);
+    }
+
+    /**
+     * @return The UDP address, or null if the gateway only listens on TCP
+     */
+    public InetSocketAddress getUdpAddress() {
+        return udpChannel == null ? null : localAddress(udpChannel);
+    }
+
+    /**
+     * Makes the gateway re-read the service's sensors before the next event. Call it after removing a sensor
+     * and adding another in its place, which the gateway can't tell from an unchanged set on its own.
+     */
+    public void refreshSensors() {
+        refreshRequested = true;
+        selector.wakeup();
+    }
+
+    public long getEventsApplied() {
+        return eventsApplied.get();
+    }
+
+    /** Events for a sensor id the service doesn't know. */
+    public long getUnknownSensorEvents() {
+        return unknownSensorEvents.get();
+    }
+
+    /** Events older than the last one applied to the same sensor. */
+    public long getStaleEvents() {
+        return staleEvents.get();
+    }
+
+    /** Frames that were cut short, too long or of an unknown type. */
+    public long getMalformedFrames() {
+        return malformedFrames.get();
+    }
+
+    /** Events the service threw on. */
+    public long getFailedEvents() {
+        return failedEvents.get();
+    }
+
+    /**
+     * Stops the selector thread and closes every channel.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            //closing anyway
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(250);
+                refreshedThisRound = false;
+                refreshIfChanged();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.channel() == udpChannel) {
+                        receiveDatagrams();
+                    } else if (key.isReadable()) {
+                        readConnection(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Telemetry gateway stopped", e);
+        } catch (ClosedSelectorException e) {
+            //closed while selecting
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel connection = tcpChannel.accept();
+        if (connection == null) {
+            return;
+        }
+        connection.configureBlocking(false);
+        connection.register(selector, SelectionKey.OP_READ, bufferPool.acquire());
+    }
+
+    private void readConnection(SelectionKey key) {
+        SocketChannel connection = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        int read;
+        try {
+            read = connection.read(buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            closeConnection(key);
+            return;
+        }
+        buffer.flip();
+        boolean corrupt = decodeFrames(buffer, false);
+        buffer.compact();
+        if (corrupt) {
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            //already gone
+        }
+        bufferPool.release((ByteBuffer) key.attachment());
+    }
+
+    private void receiveDatagrams() throws IOException {
+        while (true) {
+            datagramBuffer.clear();
+            if (udpChannel.receive(datagramBuffer) == null) {
+                return;
+            }
+            datagramBuffer.flip();
+            decodeFrames(datagramBuffer, true);
+        }
+    }
+
+    /**
+     * Applies every whole frame between the buffer's position and limit and leaves the position after the
+     * last one.
+     * @param wholeFramesOnly True for datagrams, where a trailing partial frame is malformed rather than pending
+     * @return True if the stream is corrupt and can't be decoded further
+     */
+    private boolean decodeFrames(ByteBuffer buffer, boolean wholeFramesOnly) {
+        while (buffer.remaining() >= SensorEventProtocol.LENGTH_PREFIX_BYTES) {
+            int start = buffer.position();
+            int bodyLength = buffer.getShort(start) & 0xFFFF;
+            if (bodyLength > SensorEventProtocol.MAX_BODY_BYTES) {
+                malformedFrames.incrementAndGet();
+                return true;
+            }
+            int bodyStart = start + SensorEventProtocol.LENGTH_PREFIX_BYTES;
+            if (buffer.limit() - bodyStart < bodyLength) {
+                break;
+            }
+            applyFrame(buffer, bodyStart, bodyLength);
+            buffer.position(bodyStart + bodyLength);
+        }
+        if (wholeFramesOnly && buffer.hasRemaining()) {
+            malformedFrames.incrementAndGet();
+        }
+        return false;
+    }
+
+    private void applyFrame(ByteBuffer buffer, int bodyStart, int bodyLength) {
+        if (bodyLength != SensorEventProtocol.SENSOR_EVENT_BODY_BYTES || buffer.get(bodyStart) != SensorEventProtocol.SENSOR_EVENT) {
+            malformedFrames.incrementAndGet();
+            return;
+        }
+        long most = buffer.getLong(bodyStart + 1);
+        long least = buffer.getLong(bodyStart + 9);
+        boolean active = buffer.get(bodyStart + 17) != 0;
+        long timestamp = buffer.getLong(bodyStart + 18);
+
+        int slot = sensorLookup.find(most, least);
+        if (slot < 0 && !refreshedThisRound) {
+            //the sensor may have been added since the last rebuild, look once per round at most
+            refresh();
+            slot = sensorLookup.find(most, least);
+        }
+        if (slot < 0) {
+            unknownSensorEvents.incrementAndGet();
+            return;
+        }
+        if (timestamp < sensorLookup.lastTimestamp(slot)) {
+            staleEvents.incrementAndGet();
+            return;
+        }
+        sensorLookup.setLastTimestamp(slot, timestamp);
+        try {
+            securityService.changeSensorActivationStatus(sensorLookup.sensor(slot), active);
+            eventsApplied.incrementAndGet();
+        } catch (RuntimeException e) {
+            failedEvents.incrementAndGet();
+        }
+    }
+
+    private void refreshIfChanged() {
+        Set<Sensor> sensors = securityService.getSensors();
+        if (refreshRequested || sensors != knownSensors || sensors.size() != knownSensorCount) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        refreshRequested = false;
+        refreshedThisRound = true;
+        knownSensors = securityService.getSensors();
+        knownSensorCount = knownSensors.size();
+        sensorLookup.rebuild(knownSensors);
+    }
+
+    private static InetSocketAddress localAddress(NetworkChannel channel) {
+        try {
+            return (InetSocketAddress) channel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
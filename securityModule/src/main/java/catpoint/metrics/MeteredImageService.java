@@ -0,0 +1,58 @@
+package catpoint.metrics;
+
+import service.AsyncImageServiceInterface;
+import service.ImageServiceInterface;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decorates an image service so every detection is counted and timed as {@link Operation#IMAGE_DETECTION}.
+ * Use {@link #wrap(ImageServiceInterface, SecurityMetrics)}, which keeps non-blocking services non-blocking.
+ */
+public class MeteredImageService implements ImageServiceInterface {
+
+    final ImageServiceInterface delegate;
+    final SecurityMetrics metrics;
+
+    MeteredImageService(ImageServiceInterface delegate, SecurityMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return A metered service that is also an {@link AsyncImageServiceInterface} if the delegate is one
+     */
+    public static MeteredImageService wrap(ImageServiceInterface delegate, SecurityMetrics metrics) {
+        if (delegate instanceof AsyncImageServiceInterface) {
+            return new Async(delegate, metrics);
+        }
+        return new MeteredImageService(delegate, metrics);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long start = metrics.begin(Operation.IMAGE_DETECTION);
+        try {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        } finally {
+            metrics.end(Operation.IMAGE_DETECTION, start);
+        }
+    }
+
+    private static final class Async extends MeteredImageService implements AsyncImageServiceInterface {
+
+        private Async(ImageServiceInterface delegate, SecurityMetrics metrics) {
+            super(delegate, metrics);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+            //the detection finishes on another thread, where begin/end's per-thread attribution doesn't apply
+            long start = metrics.startTimer();
+            CompletableFuture<Boolean> detection = ((AsyncImageServiceInterface) delegate).imageContainsCatAsync(image, confidenceThreshhold);
+            detection.whenComplete((cat, error) -> metrics.recordSince(Operation.IMAGE_DETECTION, start));
+            return detection;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package catpoint.metrics;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorStateIndex;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Decorates a repository so every write is counted and timed as {@link Operation#REPOSITORY_WRITE}.
+ * Reads are passed straight through.
+ */
+public class MeteredSecurityRepository implements SecurityRepository {
+
+    private final SecurityRepository delegate;
+    private final SecurityMetrics metrics;
+
+    public MeteredSecurityRepository(SecurityRepository delegate, SecurityMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.addSensor(sensor);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.removeSensor(sensor);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.updateSensor(sensor);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void addSensors(Collection<Sensor> sensors) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.addSensors(sensors);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.updateSensors(sensors);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.setAlarmStatus(alarmStatus);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.setArmingStatus(armingStatus);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public void setCatStatus(boolean catStatus) {
+        long start = metrics.begin(Operation.REPOSITORY_WRITE);
+        try {
+            delegate.setCatStatus(catStatus);
+        } finally {
+            metrics.end(Operation.REPOSITORY_WRITE, start);
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return delegate.getSensor(sensorId);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    @Override
+    public boolean getCatStatus() {
+        return delegate.getCatStatus();
+    }
+
+    @Override
+    public SensorStateIndex getSensorStateIndex() {
+        return delegate.getSensorStateIndex();
+    }
+}
@@ -0,0 +1,10 @@
+package catpoint.metrics;
+
+/**
+ * Publishes metrics somewhere outside the application, such as a log, a file or a monitoring system.
+ * Exporters are called periodically from a background thread, see
+ * {@link SecurityMetrics#startExporting(MetricsExporter, java.time.Duration)}.
+ */
+public interface MetricsExporter {
+    void export(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,45 @@
+package catpoint.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything {@link SecurityMetrics} knows at one point in time, as handed to a {@link MetricsExporter}.
+ */
+public final class MetricsSnapshot {
+    private final long timestampMillis;
+    private final Map<Operation, OperationStats> operations;
+    private final List<StateTransition> recentTransitions;
+    private final long transitionCount;
+
+    MetricsSnapshot(long timestampMillis, Map<Operation, OperationStats> operations,
+                    List<StateTransition> recentTransitions, long transitionCount) {
+        this.timestampMillis = timestampMillis;
+        this.operations = Collections.unmodifiableMap(operations);
+        this.recentTransitions = Collections.unmodifiableList(recentTransitions);
+        this.transitionCount = transitionCount;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public Map<Operation, OperationStats> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return The most recent transitions, oldest first, as many as the transition log holds
+     */
+    public List<StateTransition> getRecentTransitions() {
+        return recentTransitions;
+    }
+
+    /**
+     * @return Number of transitions recorded since the metrics were created or last reset
+     */
+    public long getTransitionCount() {
+        return transitionCount;
+    }
+}
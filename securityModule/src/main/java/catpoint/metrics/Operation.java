@@ -0,0 +1,17 @@
+package catpoint.metrics;
+
+/**
+ * The steps of the alarm pipeline that are counted and timed.
+ */
+public enum Operation {
+    SET_ARMING_STATUS,
+    CHANGE_SENSOR_ACTIVATION,
+    APPLY_SENSOR_EVENTS,
+    PROCESS_IMAGE,
+    SET_ALARM_STATUS,
+    ADD_SENSOR,
+    REMOVE_SENSOR,
+    IMAGE_DETECTION,
+    REPOSITORY_WRITE,
+    LISTENER_FANOUT
+}
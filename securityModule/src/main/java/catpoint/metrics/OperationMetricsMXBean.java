@@ -0,0 +1,18 @@
+package catpoint.metrics;
+
+/**
+ * JMX view of one {@link Operation}'s count and latencies.
+ */
+public interface OperationMetricsMXBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,52 @@
+package catpoint.metrics;
+
+/**
+ * Point-in-time summary of one operation's count and latency distribution, in nanoseconds.
+ */
+public final class OperationStats {
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    OperationStats(LatencyHistogram histogram) {
+        count = histogram.getTotalCount();
+        meanNanos = histogram.getMean();
+        p50Nanos = histogram.getValueAtPercentile(50);
+        p99Nanos = histogram.getValueAtPercentile(99);
+        p999Nanos = histogram.getValueAtPercentile(99.9);
+        maxNanos = histogram.getMaxValue();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                count, meanNanos / 1000.0, p50Nanos / 1000.0, p99Nanos / 1000.0, p999Nanos / 1000.0, maxNanos / 1000.0);
+    }
+}
@@ -0,0 +1,42 @@
+package catpoint.metrics;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a plain-text report of the operations that ran and the transitions that happened since the
+ * previous export.
+ */
+public class PrintStreamMetricsExporter implements MetricsExporter {
+
+    private final PrintStream out;
+    private long exportedTransitions;
+
+    public PrintStreamMetricsExporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void export(MetricsSnapshot snapshot) {
+        StringBuilder report = new StringBuilder("catpoint metrics at ")
+                .append(Instant.ofEpochMilli(snapshot.getTimestampMillis())).append(System.lineSeparator());
+        for (Map.Entry<Operation, OperationStats> entry : snapshot.getOperations().entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                report.append("  ").append(entry.getKey()).append(' ').append(entry.getValue()).append(System.lineSeparator());
+            }
+        }
+        //a reset starts the count over, anything newer than our last export is then new again
+        long count = snapshot.getTransitionCount();
+        long newTransitions = count >= exportedTransitions ? count - exportedTransitions : count;
+        List<StateTransition> recent = snapshot.getRecentTransitions();
+        int from = (int) Math.max(0, recent.size() - newTransitions);
+        for (StateTransition transition : recent.subList(from, recent.size())) {
+            report.append("  ").append(transition).append(System.lineSeparator());
+        }
+        exportedTransitions = count;
+        out.print(report);
+        out.flush();
+    }
+}
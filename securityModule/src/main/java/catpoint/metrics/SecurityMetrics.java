@@ -0,0 +1,325 @@
+package catpoint.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters, latency histograms and a state-transition log for the alarm pipeline.
+ *
+ * Instrumented code brackets each {@link Operation} with {@link #begin(Operation)} and
+ * {@link #end(Operation, long)}, or, only for calls that complete on another thread, with
+ * {@link #startTimer()} and {@link #recordSince(Operation, long)}. Recording is a striped counter increment and a histogram update, with no
+ * allocation and no locking. Operations can nest, and a status change recorded with
+ * {@link #recordTransition(Enum, Enum)} is attributed to the outermost operation running on that thread.
+ *
+ * {@link #DISABLED} is the default everywhere. Its methods return straight away, so leaving
+ * instrumentation in place costs a field read and a branch per call.
+ *
+ * The numbers can be read directly, watched over JMX after {@link #registerMBeans()}, or pushed
+ * periodically to any number of {@link MetricsExporter}s.
+ */
+public class SecurityMetrics {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    public static final SecurityMetrics DISABLED = new SecurityMetrics(false, 1);
+    public static final int DEFAULT_TRANSITION_LOG_SIZE = 1024;
+    public static final String JMX_DOMAIN = "catpoint";
+
+    private final boolean enabled;
+    private final LongAdder[] counts = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final ThreadLocal<Cause> causes = ThreadLocal.withInitial(Cause::new);
+    private final StateTransition[] transitions;
+    private long transitionCount; //guarded by transitions
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private ScheduledExecutorService exportScheduler;
+
+    public SecurityMetrics() {
+        this(DEFAULT_TRANSITION_LOG_SIZE);
+    }
+
+    /**
+     * @param transitionLogSize How many of the most recent state transitions are kept
+     */
+    public SecurityMetrics(int transitionLogSize) {
+        this(true, transitionLogSize);
+    }
+
+    private SecurityMetrics(boolean enabled, int transitionLogSize) {
+        if (transitionLogSize < 1) {
+            throw new IllegalArgumentException("transitionLogSize must be positive");
+        }
+        this.enabled = enabled;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            counts[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+        transitions = new StateTransition[transitionLogSize];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Marks the start of an operation on the current thread.
+     * @return The start time to pass to {@link #end(Operation, long)}
+     */
+    public long begin(Operation operation) {
+        if (!enabled) {
+            return 0;
+        }
+        Cause cause = causes.get();
+        if (cause.depth++ == 0) {
+            cause.operation = operation;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of an operation started with {@link #begin(Operation)} and records its latency.
+     * Should be called from a finally block, so a failed operation doesn't leave a stale cause behind.
+     */
+    public void end(Operation operation, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        record(operation, System.nanoTime() - startNanos);
+        Cause cause = causes.get();
+        if (--cause.depth == 0) {
+            cause.operation = null;
+        }
+    }
+
+    /**
+     * @return The current time for timing a call with {@link #recordSince(Operation, long)}, or 0 when disabled
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records an operation that started at the given time, without taking part in transition attribution.
+     * Only for calls that finish on another thread; everything else uses {@link #begin(Operation)}.
+     */
+    public void recordSince(Operation operation, long startNanos) {
+        if (enabled) {
+            record(operation, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Adds a status change to the transition log. Changes to the same status are ignored.
+     */
+    public void recordTransition(Enum<?> from, Enum<?> to) {
+        if (!enabled || from == to) {
+            return;
+        }
+        StateTransition transition = new StateTransition(System.currentTimeMillis(), from, to, causes.get().operation);
+        synchronized (transitions) {
+            transitions[(int) (transitionCount % transitions.length)] = transition;
+            transitionCount++;
+        }
+    }
+
+    public long getCount(Operation operation) {
+        return counts[operation.ordinal()].sum();
+    }
+
+    /**
+     * @return Latencies of the operation in nanoseconds
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getTransitionCount() {
+        synchronized (transitions) {
+            return transitionCount;
+        }
+    }
+
+    /**
+     * @return The most recent transitions, oldest first
+     */
+    public List<StateTransition> getRecentTransitions() {
+        synchronized (transitions) {
+            int size = (int) Math.min(transitionCount, transitions.length);
+            List<StateTransition> recent = new ArrayList<>(size);
+            for (long i = transitionCount - size; i < transitionCount; i++) {
+                recent.add(transitions[(int) (i % transitions.length)]);
+            }
+            return recent;
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+        for (Operation operation : OPERATIONS) {
+            operations.put(operation, new OperationStats(latencies[operation.ordinal()]));
+        }
+        synchronized (transitions) {
+            return new MetricsSnapshot(System.currentTimeMillis(), operations, getRecentTransitions(), transitionCount);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            counts[i].reset();
+            latencies[i].reset();
+        }
+        synchronized (transitions) {
+            Arrays.fill(transitions, null);
+            transitionCount = 0;
+        }
+    }
+
+    /**
+     * Registers one MBean per operation ({@code catpoint:type=Operation,name=...}) and one for the
+     * transition log ({@code catpoint:type=Transitions}) with the platform MBean server.
+     */
+    public synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : OPERATIONS) {
+                register(server, new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + operation.name()),
+                        new OperationMetrics(latencies[operation.ordinal()]));
+            }
+            register(server, new ObjectName(JMX_DOMAIN + ":type=Transitions"), new TransitionLog());
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Unable to register metrics MBeans", e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                //already gone, nothing left to clean up
+            }
+        }
+        registeredNames.clear();
+    }
+
+    /**
+     * Hands a snapshot to the exporter every {@code period}, on a background thread shared by all exporters
+     * of these metrics.
+     */
+    public synchronized void startExporting(MetricsExporter exporter, Duration period) {
+        if (exportScheduler == null) {
+            exportScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "catpoint-metrics-export");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        long periodMillis = period.toMillis();
+        exportScheduler.scheduleAtFixedRate(() -> {
+            try {
+                exporter.export(snapshot());
+            } catch (RuntimeException e) {
+                //a failing exporter must not stop later exports
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops all exporters started with {@link #startExporting(MetricsExporter, Duration)}.
+     */
+    public synchronized void stopExporting() {
+        if (exportScheduler != null) {
+            exportScheduler.shutdownNow();
+            exportScheduler = null;
+        }
+    }
+
+    private void record(Operation operation, long nanos) {
+        counts[operation.ordinal()].increment();
+        latencies[operation.ordinal()].recordValue(nanos);
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean, name);
+        registeredNames.add(name);
+    }
+
+    private static final class Cause {
+        private int depth;
+        private Operation operation;
+    }
+
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+        private final LatencyHistogram histogram;
+
+        private OperationMetrics(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getTotalCount();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.getMean() / 1000.0;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histogram.getValueAtPercentile(50) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histogram.getValueAtPercentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return histogram.getValueAtPercentile(99.9) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return histogram.getMaxValue() / 1000.0;
+        }
+    }
+
+    private final class TransitionLog implements TransitionLogMXBean {
+        @Override
+        public long getTransitionCount() {
+            return SecurityMetrics.this.getTransitionCount();
+        }
+
+        @Override
+        public String[] getRecentTransitions() {
+            return SecurityMetrics.this.getRecentTransitions().stream().map(StateTransition::toString).toArray(String[]::new);
+        }
+
+        @Override
+        public void reset() {
+            SecurityMetrics.this.reset();
+        }
+    }
+}
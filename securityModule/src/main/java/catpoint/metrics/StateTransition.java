@@ -0,0 +1,45 @@
+package catpoint.metrics;
+
+import java.time.Instant;
+
+/**
+ * One change of the arming or alarm status, and the operation that caused it.
+ */
+public final class StateTransition {
+    private final long timestampMillis;
+    private final Enum<?> from;
+    private final Enum<?> to;
+    private final Operation cause;
+
+    public StateTransition(long timestampMillis, Enum<?> from, Enum<?> to, Operation cause) {
+        this.timestampMillis = timestampMillis;
+        this.from = from;
+        this.to = to;
+        this.cause = cause;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public Enum<?> getFrom() {
+        return from;
+    }
+
+    public Enum<?> getTo() {
+        return to;
+    }
+
+    /**
+     * @return The outermost operation running when the transition happened, or null if it happened
+     * outside any instrumented operation
+     */
+    public Operation getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(timestampMillis) + " " + from + " -> " + to + " (" + cause + ")";
+    }
+}
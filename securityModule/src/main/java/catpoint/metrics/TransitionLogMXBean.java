@@ -0,0 +1,18 @@
+package catpoint.metrics;
+
+/**
+ * JMX view of the state-transition log.
+ */
+public interface TransitionLogMXBean {
+    long getTransitionCount();
+
+    /**
+     * @return The most recent transitions, oldest first, one line each
+     */
+    String[] getRecentTransitions();
+
+    /**
+     * Clears all counters, latencies and the transition log.
+     */
+    void reset();
+}
@@ -0,0 +1,693 @@
+package catpoint.replication;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorStateIndex;
+import catpoint.metrics.LatencyHistogram;
+import catpoint.service.TaskThreads;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository that keeps the same state on several nodes, one per JVM, connected over TCP.
+ *
+ * Each node stores its state in a local repository. One node leads: it takes every write, applies it locally and
+ * appends it to a {@link ReplicationLog} under the next sequence number. The other nodes follow: they connect
+ * to the leader, which streams them the changes after the last one they applied, or a {@link ReplicationProtocol#SNAPSHOT}
+ * of its whole state if those are no longer in its log. Followers serve reads from their local copy and refuse
+ * writes. Replication is asynchronous, the leader never waits for followers, and how far each one is behind is
+ * reported through {@link #getMaxFollowerLag()} and {@link #getReplicationLag()}.
+ *
+ * The nodes are listed in the same order on every node, and a node's position in the list is its rank. A follower
+ * that has had no leader for the election timeout times one more than its rank takes over, so the lowest ranked
+ * survivor is promoted first and the others find and follow it before their own turn comes. Every promotion
+ * starts a new term, past any term the node has heard of. Followers don't follow a leader from a term older
+ * than one they have seen. A leader probes the other members every heartbeat and steps down when another
+ * one leads with a newer term, or the same term and a lower rank, so a leader that was cut off or paused
+ * while another was promoted gives way once it can reach the others again; it then discards its state for
+ * a snapshot from the new leader. This is failover, not consensus: changes a dying leader had not yet sent
+ * are lost, and so are changes a cut-off leader took before it found out.
+ *
+ * Local repositories are read without the node's lock, so they must allow reads concurrent with writes, as
+ * {@link catpoint.data.ShardedSecurityRepositoryImpl} does.
+ */
+public class ReplicatedSecurityRepository implements SecurityRepository, Closeable {
+
+    public enum Role { FOLLOWER, LEADER }
+
+    public static final int DEFAULT_LOG_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH = 512;
+    private static final int ACK_EVERY = 1024;
+
+    private final SecurityRepository local;
+    private final List<InetSocketAddress> members;
+    private final int rank;
+    private final long electionTimeoutMillis;
+    private final long heartbeatMillis;
+    private final ReplicationLog log;
+    private final Map<UUID, Sensor> sensorsById = new HashMap<>();
+    private final Set<FollowerLink> followers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService threads = TaskThreads.newThreadPerTaskExecutor("catpoint-replication");
+    private final LatencyHistogram replicationLag = new LatencyHistogram();
+    private final AtomicLong snapshotsSent = new AtomicLong();
+
+    private ServerSocket serverSocket;
+    private volatile Role role = Role.FOLLOWER;
+    private volatile long term;
+    //highest term heard from any member, never below term
+    private volatile long seenTerm;
+    //set when this node stepped down, its state may hold changes the new leader never had
+    private volatile boolean resync;
+    private volatile long appliedSeq;
+    private volatile InetSocketAddress leaderAddress;
+    private volatile Socket leaderSocket;
+    private volatile boolean closed;
+
+    public ReplicatedSecurityRepository(SecurityRepository local, List<InetSocketAddress> members, int rank) {
+        this(local, members, rank, Duration.ofSeconds(2), DEFAULT_LOG_CAPACITY);
+    }
+
+    /**
+     * @param local Repository holding this node's copy of the state
+     * @param members Replication address of every node, in rank order, the same on every node
+     * @param rank Position of this node in the members
+     * @param electionTimeout How long a leader may stay silent before followers look for another
+     * @param logCapacity Number of recent changes the leader keeps for followers to catch up from
+     */
+    public ReplicatedSecurityRepository(SecurityRepository local, List<InetSocketAddress> members, int rank,
+                                        Duration electionTimeout, int logCapacity) {
+        if (rank < 0 || rank >= members.size()) {
+            throw new IllegalArgumentException("rank must be a position in members");
+        }
+        this.local = local;
+        this.members = List.copyOf(members);
+        this.rank = rank;
+        this.electionTimeoutMillis = Math.max(3, electionTimeout.toMillis());
+        this.heartbeatMillis = electionTimeoutMillis / 3;
+        this.log = new ReplicationLog(logCapacity);
+        local.getSensors().forEach(sensor -> sensorsById.put(sensor.getSensorId(), sensor));
+    }
+
+    /**
+     * Starts listening on this node's address and looking for a leader, or becoming one.
+     */
+    public synchronized void start() {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Replication already started");
+        }
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(members.get(rank), 64);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to listen on " + members.get(rank), e);
+        }
+        threads.execute(this::acceptFollowers);
+        threads.execute(this::elect);
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        checkLeader();
+        local.addSensor(sensor);
+        sensorsById.put(sensor.getSensorId(), sensor);
+        appliedSeq = log.append(ReplicationProtocol.sensorChange(ReplicationProtocol.SENSOR_ADDED, sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        checkLeader();
+        local.removeSensor(sensor);
+        sensorsById.remove(sensor.getSensorId());
+        appliedSeq = log.append(ReplicationProtocol.sensorRemoved(sensor.getSensorId()));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        checkLeader();
+        local.updateSensor(sensor);
+        sensorsById.put(sensor.getSensorId(), sensor);
+        appliedSeq = log.append(ReplicationProtocol.sensorChange(ReplicationProtocol.SENSOR_UPDATED, sensor));
+    }
+
+    @Override
+    public synchronized void addSensors(Collection<Sensor> sensors) {
+        checkLeader();
+        local.addSensors(sensors);
+        for (Sensor sensor : sensors) {
+            sensorsById.put(sensor.getSensorId(), sensor);
+            appliedSeq = log.append(ReplicationProtocol.sensorChange(ReplicationProtocol.SENSOR_ADDED, sensor));
+        }
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        checkLeader();
+        local.updateSensors(sensors);
+        for (Sensor sensor : sensors) {
+            sensorsById.put(sensor.getSensorId(), sensor);
+            appliedSeq = log.append(ReplicationProtocol.sensorChange(ReplicationProtocol.SENSOR_UPDATED, sensor));
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        checkLeader();
+        if (local.getAlarmStatus() != alarmStatus) {
+            local.setAlarmStatus(alarmStatus);
+            appliedSeq = log.append(ReplicationProtocol.alarmStatus(alarmStatus));
+        }
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        checkLeader();
+        if (local.getArmingStatus() != armingStatus) {
+            local.setArmingStatus(armingStatus);
+            appliedSeq = log.append(ReplicationProtocol.armingStatus(armingStatus));
+        }
+    }
+
+    @Override
+    public synchronized void setCatStatus(boolean catStatus) {
+        checkLeader();
+        if (local.getCatStatus() != catStatus) {
+            local.setCatStatus(catStatus);
+            appliedSeq = log.append(ReplicationProtocol.catStatus(catStatus));
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return local.getSensors();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return local.getSensor(sensorId);
+    }
+
+    @Override
+    public SensorStateIndex getSensorStateIndex() {
+        return local.getSensorStateIndex();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return local.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return local.getArmingStatus();
+    }
+
+    @Override
+    public boolean getCatStatus() {
+        return local.getCatStatus();
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public boolean isLeader() {
+        return role == Role.LEADER;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    /**
+     * @return Sequence number of the last change written, on the leader, or applied, on a follower
+     */
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    /**
+     * @return Address of the leader this follower is connected to, or null if it has none
+     */
+    public InetSocketAddress getLeaderAddress() {
+        return leaderAddress;
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    /**
+     * @return Number of changes the furthest behind follower has yet to confirm, 0 with no followers
+     */
+    public long getMaxFollowerLag() {
+        long lastSeq = log.getLastSeq();
+        long lag = 0;
+        for (FollowerLink follower : followers) {
+            lag = Math.max(lag, lastSeq - follower.ackedSeq);
+        }
+        return lag;
+    }
+
+    /**
+     * @return Nanoseconds from a change being written on the leader to a follower confirming it, sampled at
+     * each confirmation
+     */
+    public LatencyHistogram getReplicationLag() {
+        return replicationLag;
+    }
+
+    /**
+     * @return Number of times a follower had to be sent the whole state because its next change was no longer logged
+     */
+    public long getSnapshotsSent() {
+        return snapshotsSent.get();
+    }
+
+    /**
+     * Stops replicating and closes every connection. The local repository is left open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            closeQuietly(serverSocket);
+            closeQuietly(leaderSocket);
+            followers.forEach(follower -> closeQuietly(follower.socket));
+        }
+        threads.shutdownNow();
+        try {
+            threads.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkLeader() {
+        if (role != Role.LEADER) {
+            throw new IllegalStateException("Node " + rank + " is not the replication leader");
+        }
+    }
+
+    private void elect() {
+        long leaderlessSince = System.nanoTime();
+        try {
+            while (!closed) {
+                if (role == Role.LEADER) {
+                    Thread.sleep(heartbeatMillis);
+                    yieldToNewerLeader();
+                    leaderlessSince = System.nanoTime();
+                    continue;
+                }
+                for (int i = 0; i < members.size() && role == Role.FOLLOWER && !closed; i++) {
+                    if (i != rank && follow(members.get(i))) {
+                        leaderlessSince = System.nanoTime();
+                    }
+                }
+                long waited = System.nanoTime() - leaderlessSince;
+                if (!closed && waited >= TimeUnit.MILLISECONDS.toNanos(electionTimeoutMillis * (rank + 1))) {
+                    promote();
+                } else {
+                    Thread.sleep(heartbeatMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            //closed
+        }
+    }
+
+    private synchronized void promote() {
+        if (closed || role == Role.LEADER) {
+            return;
+        }
+        term = seenTerm + 1;
+        seenTerm = term;
+        log.reset(appliedSeq);
+        role = Role.LEADER;
+    }
+
+    private synchronized void stepDown() {
+        role = Role.FOLLOWER;
+        resync = true;
+        followers.forEach(follower -> closeQuietly(follower.socket));
+    }
+
+    /**
+     * Asks the other members whether they lead and steps down for one with a newer term, or the same term
+     * and a lower rank. Followers that moved on to another leader never tell this one, so without asking
+     * a leader that was unreachable during a promotion would go on leading after it is reachable again.
+     */
+    private void yieldToNewerLeader() {
+        for (int i = 0; i < members.size() && role == Role.LEADER && !closed; i++) {
+            if (i == rank) {
+                continue;
+            }
+            long otherTerm = ReplicationProtocol.probe(members.get(i), (int) heartbeatMillis);
+            synchronized (this) {
+                seenTerm = Math.max(seenTerm, otherTerm);
+                if (role == Role.LEADER && (otherTerm > term || (otherTerm == term && i < rank))) {
+                    stepDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects to a node and, if it leads, applies what it sends until the connection ends.
+     * @return True if the node was followed
+     */
+    private boolean follow(InetSocketAddress address) {
+        boolean followed = false;
+        try (Socket socket = new Socket()) {
+            leaderSocket = socket;
+            if (closed) {
+                return false;
+            }
+            socket.connect(address, (int) electionTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) electionTimeoutMillis);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            out.writeInt(ReplicationProtocol.MAGIC);
+            //no term after stepping down, so the leader sends a snapshot instead of changes after our sequence
+            out.writeLong(resync ? 0 : term);
+            out.writeLong(appliedSeq);
+            out.flush();
+            if (in.readByte() != ReplicationProtocol.LEADER) {
+                return false;
+            }
+            long leaderTerm = in.readLong();
+            synchronized (this) {
+                if (leaderTerm < seenTerm) {
+                    return false; //a leader that missed a promotion since
+                }
+                if (role != Role.FOLLOWER) {
+                    return false;
+                }
+                term = leaderTerm;
+                seenTerm = leaderTerm;
+            }
+            followed = true;
+            leaderAddress = address;
+            replicate(in, out);
+        } catch (IOException e) {
+            //unreachable, or the leader went away
+        } finally {
+            leaderSocket = null;
+            leaderAddress = null;
+        }
+        return followed;
+    }
+
+    private void replicate(DataInputStream in, DataOutputStream out) throws IOException {
+        int unacknowledged = 0;
+        while (!closed) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationProtocol.SNAPSHOT -> applySnapshot(in);
+                case ReplicationProtocol.ENTRY -> applyEntry(in.readLong(), in);
+                case ReplicationProtocol.HEARTBEAT -> in.readLong();
+                default -> throw new IOException("Unknown replication message " + type);
+            }
+            //acknowledge once caught up with what has arrived, and regularly under a steady stream
+            if (++unacknowledged >= ACK_EVERY || in.available() == 0) {
+                out.writeLong(appliedSeq);
+                out.flush();
+                unacknowledged = 0;
+            }
+        }
+    }
+
+    private void applyEntry(long seq, DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case ReplicationProtocol.SENSOR_ADDED, ReplicationProtocol.SENSOR_UPDATED -> {
+                Sensor sensor = ReplicationProtocol.readSensor(in);
+                synchronized (this) {
+                    putSensor(sensor);
+                }
+            }
+            case ReplicationProtocol.SENSOR_REMOVED -> {
+                UUID sensorId = new UUID(in.readLong(), in.readLong());
+                synchronized (this) {
+                    dropSensor(sensorId);
+                }
+            }
+            case ReplicationProtocol.ALARM_STATUS -> {
+                AlarmStatus alarmStatus = ReplicationProtocol.readAlarmStatus(in);
+                synchronized (this) {
+                    local.setAlarmStatus(alarmStatus);
+                }
+            }
+            case ReplicationProtocol.ARMING_STATUS -> {
+                ArmingStatus armingStatus = ReplicationProtocol.readArmingStatus(in);
+                synchronized (this) {
+                    local.setArmingStatus(armingStatus);
+                }
+            }
+            case ReplicationProtocol.CAT_STATUS -> {
+                boolean cat = in.readBoolean();
+                synchronized (this) {
+                    local.setCatStatus(cat);
+                }
+            }
+            default -> throw new IOException("Unknown replicated change " + kind);
+        }
+        appliedSeq = seq;
+    }
+
+    private void applySnapshot(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        AlarmStatus alarmStatus = ReplicationProtocol.readAlarmStatus(in);
+        ArmingStatus armingStatus = ReplicationProtocol.readArmingStatus(in);
+        boolean cat = in.readBoolean();
+        int count = in.readInt();
+        List<Sensor> sensors = new ArrayList<>(count);
+        Set<UUID> sensorIds = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = ReplicationProtocol.readSensor(in);
+            sensors.add(sensor);
+            sensorIds.add(sensor.getSensorId());
+        }
+        synchronized (this) {
+            for (UUID sensorId : new ArrayList<>(sensorsById.keySet())) {
+                if (!sensorIds.contains(sensorId)) {
+                    dropSensor(sensorId);
+                }
+            }
+            sensors.forEach(this::putSensor);
+            local.setAlarmStatus(alarmStatus);
+            local.setArmingStatus(armingStatus);
+            local.setCatStatus(cat);
+            resync = false;
+        }
+        appliedSeq = seq;
+    }
+
+    /**
+     * Stores a replicated sensor, updating the instance already held for its id so references to it stay current.
+     */
+    private void putSensor(Sensor replica) {
+        Sensor existing = sensorsById.get(replica.getSensorId());
+        if (existing == null) {
+            sensorsById.put(replica.getSensorId(), replica);
+            local.addSensor(replica);
+            return;
+        }
+        existing.setName(replica.getName());
+        existing.setSensorType(replica.getSensorType());
+        existing.setActive(replica.getActive());
+        local.updateSensor(existing);
+    }
+
+    private void dropSensor(UUID sensorId) {
+        Sensor existing = sensorsById.remove(sensorId);
+        if (existing != null) {
+            local.removeSensor(existing);
+        }
+    }
+
+    private void acceptFollowers() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                continue; //closed, or a connection that failed before being accepted
+            }
+            threads.execute(() -> serve(socket));
+        }
+    }
+
+    /**
+     * Answers a node's hello and, if this node leads, streams changes to it until it goes away.
+     */
+    private void serve(Socket socket) {
+        FollowerLink follower = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) (2 * electionTimeoutMillis));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            if (in.readInt() != ReplicationProtocol.MAGIC) {
+                return;
+            }
+            long helloTerm = in.readLong();
+            long helloSeq = in.readLong();
+            long resumeFrom;
+            synchronized (this) {
+                seenTerm = Math.max(seenTerm, helloTerm);
+                if (helloTerm > term && role == Role.LEADER) {
+                    //someone has followed a leader promoted after this node last was
+                    stepDown();
+                }
+                if (role != Role.LEADER || closed) {
+                    out.writeByte(ReplicationProtocol.NOT_LEADER);
+                    out.flush();
+                    return;
+                }
+                out.writeByte(ReplicationProtocol.LEADER);
+                out.writeLong(term);
+                out.flush();
+                if (helloTerm == ReplicationProtocol.PROBE_TERM) {
+                    return;
+                }
+                resumeFrom = helloTerm == term && log.canResumeAfter(helloSeq) ? helloSeq + 1 : -1;
+                follower = new FollowerLink(socket, term, resumeFrom < 0 ? 0 : helloSeq);
+                followers.add(follower);
+            }
+            FollowerLink acknowledging = follower;
+            threads.execute(() -> readAcknowledgements(acknowledging, in));
+            stream(follower, out, resumeFrom);
+        } catch (IOException e) {
+            //the follower went away or isn't speaking the protocol
+        } catch (InterruptedException e) {
+            //closed
+        } finally {
+            if (follower != null) {
+                followers.remove(follower);
+            }
+        }
+    }
+
+    /**
+     * @param resumeFrom Sequence number of the first change to send, or -1 to start with a snapshot
+     */
+    private void stream(FollowerLink follower, DataOutputStream out, long resumeFrom) throws IOException, InterruptedException {
+        long next = resumeFrom;
+        while (!closed && role == Role.LEADER && term == follower.term) {
+            List<byte[]> batch = next < 0 ? null : log.read(next, MAX_BATCH, heartbeatMillis);
+            if (batch == null) {
+                next = writeSnapshot(out) + 1;
+                snapshotsSent.incrementAndGet();
+            } else if (batch.isEmpty()) {
+                out.writeByte(ReplicationProtocol.HEARTBEAT);
+                out.writeLong(log.getLastSeq());
+            } else {
+                for (byte[] entry : batch) {
+                    out.writeByte(ReplicationProtocol.ENTRY);
+                    out.writeLong(next++);
+                    out.write(entry);
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Encodes the whole state under the lock, so it matches a sequence number exactly, and sends it outside it.
+     * @return The sequence number the snapshot is at
+     */
+    private long writeSnapshot(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream snapshot = new DataOutputStream(bytes);
+        long seq;
+        synchronized (this) {
+            seq = log.getLastSeq();
+            snapshot.writeByte(ReplicationProtocol.SNAPSHOT);
+            snapshot.writeLong(seq);
+            snapshot.writeByte(local.getAlarmStatus().ordinal());
+            snapshot.writeByte(local.getArmingStatus().ordinal());
+            snapshot.writeBoolean(local.getCatStatus());
+            snapshot.writeInt(sensorsById.size());
+            for (Sensor sensor : sensorsById.values()) {
+                ReplicationProtocol.writeSensor(snapshot, sensor);
+            }
+        }
+        bytes.writeTo(out);
+        return seq;
+    }
+
+    private void readAcknowledgements(FollowerLink follower, DataInputStream in) {
+        try {
+            while (true) {
+                long acked = in.readLong();
+                if (acked > follower.ackedSeq) {
+                    long appended = log.appendNanos(acked);
+                    if (appended >= 0) {
+                        replicationLag.recordValue(System.nanoTime() - appended);
+                    }
+                    follower.ackedSeq = acked;
+                }
+            }
+        } catch (IOException e) {
+            //a follower that stops acknowledging is dropped, it reconnects when it is alive
+            closeQuietly(follower.socket);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //closing anyway
+        }
+    }
+
+    /**
+     * A follower's connection to this leader.
+     */
+    private static final class FollowerLink {
+        private final Socket socket;
+        private final long term;
+        private volatile long ackedSeq;
+
+        private FollowerLink(Socket socket, long term, long ackedSeq) {
+            this.socket = socket;
+            this.term = term;
+            this.ackedSeq = ackedSeq;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package catpoint.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The leader's most recent changes, kept in a ring of fixed capacity and numbered by consecutive sequence
+ * numbers. Followers read from it at their own pace. One that falls so far behind that the change it needs
+ * next has been overwritten can't be caught up from the log and gets a snapshot instead, which bounds both
+ * the leader's memory and how much a follower ever has to replay.
+ */
+class ReplicationLog {
+
+    private final byte[][] entries;
+    private final long[] appendNanos;
+    private final int mask;
+    private long firstSeq = 1;
+    private long lastSeq;
+
+    /**
+     * @param requestedCapacity Minimum number of changes kept, rounded up to the next power of two
+     */
+    ReplicationLog(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > (1 << 24)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 16777216");
+        }
+        int capacity = 1;
+        while (capacity < requestedCapacity) {
+            capacity <<= 1;
+        }
+        entries = new byte[capacity][];
+        appendNanos = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return The sequence number given to the change
+     */
+    synchronized long append(byte[] entry) {
+        long seq = ++lastSeq;
+        int slot = (int) (seq & mask);
+        entries[slot] = entry;
+        appendNanos[slot] = System.nanoTime();
+        notifyAll();
+        return seq;
+    }
+
+    /**
+     * Empties the log and continues numbering after the given sequence number, for a node taking over as leader.
+     */
+    synchronized void reset(long lastSeq) {
+        this.lastSeq = lastSeq;
+        this.firstSeq = lastSeq + 1;
+        notifyAll();
+    }
+
+    synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * @return True if a follower that has applied everything up to the given sequence number can continue from the log
+     */
+    synchronized boolean canResumeAfter(long appliedSeq) {
+        return appliedSeq <= lastSeq && appliedSeq + 1 >= oldestSeq();
+    }
+
+    /**
+     * Waits until there are changes from the given sequence number on and returns them in order.
+     * @return Up to max changes, an empty list if none came in time, or null if the first one is no longer kept
+     */
+    synchronized List<byte[]> read(long fromSeq, int max, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (fromSeq > lastSeq && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        if (fromSeq < oldestSeq()) {
+            return null;
+        }
+        long end = Math.min(lastSeq, fromSeq + max - 1);
+        List<byte[]> batch = new ArrayList<>((int) Math.max(0, end - fromSeq + 1));
+        for (long seq = fromSeq; seq <= end; seq++) {
+            batch.add(entries[(int) (seq & mask)]);
+        }
+        return batch;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the change was appended, or -1 if it is no longer kept
+     */
+    synchronized long appendNanos(long seq) {
+        return seq >= oldestSeq() && seq <= lastSeq ? appendNanos[(int) (seq & mask)] : -1;
+    }
+
+    private long oldestSeq() {
+        return Math.max(firstSeq, lastSeq - mask);
+    }
+}
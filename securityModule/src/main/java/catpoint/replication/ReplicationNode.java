@@ -0,0 +1,53 @@
+package catpoint.replication;
+
+import catpoint.data.ShardedSecurityRepositoryImpl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs one replication node in its own JVM, keeping its copy of the state in a {@link ShardedSecurityRepositoryImpl}.
+ * Start one per port with the same port list to try failover on one machine, then kill the leader:
+ *
+ * <pre>ReplicationNode &lt;rank&gt; &lt;port,port,...&gt;</pre>
+ *
+ * Ports are on the loopback interface, and {@code -Dcatpoint.electionMillis} sets the election timeout, 2000 by
+ * default. The node prints its role, term, last sequence number and sensor count
+ * every second, and on the leader the number of followers and how far behind the slowest one is.
+ */
+public class ReplicationNode {
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 2) {
+            System.err.println("Usage: ReplicationNode <rank> <port,port,...>");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        int rank = Integer.parseInt(args[0]);
+        List<InetSocketAddress> members = new ArrayList<>();
+        for (String port : args[1].split(",")) {
+            members.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())));
+        }
+
+        Duration electionTimeout = Duration.ofMillis(Long.getLong("catpoint.electionMillis", 2000));
+        ReplicatedSecurityRepository repository = new ReplicatedSecurityRepository(new ShardedSecurityRepositoryImpl(), members, rank,
+                electionTimeout, ReplicatedSecurityRepository.DEFAULT_LOG_CAPACITY);
+        Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "catpoint-replication-shutdown"));
+        repository.start();
+        while (true) {
+            Thread.sleep(1000);
+            if (repository.isLeader()) {
+                System.out.printf("node %d LEADER term %d seq %d sensors %d followers %d lag %d%n",
+                        rank, repository.getTerm(), repository.getAppliedSeq(), repository.getSensors().size(),
+                        repository.getFollowerCount(), repository.getMaxFollowerLag());
+            } else {
+                System.out.printf("node %d FOLLOWER of %s term %d seq %d sensors %d alarm %s arming %s%n",
+                        rank, repository.getLeaderAddress(), repository.getTerm(), repository.getAppliedSeq(),
+                        repository.getSensors().size(), repository.getAlarmStatus(), repository.getArmingStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package catpoint.replication;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.UUID;
+
+/**
+ * Wire format spoken between replication nodes, all big-endian through {@link DataOutput}.
+ *
+ * A follower opens a connection and sends a hello: {@link #MAGIC}, the term of the last leader it followed and
+ * the sequence number of the last change it applied. A node that isn't leading answers {@link #NOT_LEADER} and
+ * closes. The leader answers {@link #LEADER} and its term, then streams messages, each starting with a type byte:
+ * <ul>
+ *     <li>{@link #SNAPSHOT}: the sequence number it is at, alarm, arming and cat status and every sensor</li>
+ *     <li>{@link #ENTRY}: a sequence number followed by one encoded change</li>
+ *     <li>{@link #HEARTBEAT}: the leader's latest sequence number, sent while there are no changes</li>
+ * </ul>
+ * The follower answers with the sequence number it has applied, as a plain long, whenever it has drained
+ * what arrived. A hello with a term of {@link #PROBE_TERM} only asks who leads: the reply is sent and the
+ * connection closed.
+ *
+ * Every change carries the full new state of what it describes, so applying one twice is harmless.
+ */
+public final class ReplicationProtocol {
+
+    public static final int MAGIC = 0xCA7_0001;
+    public static final long PROBE_TERM = -1;
+
+    public static final byte LEADER = 'L';
+    public static final byte NOT_LEADER = 'N';
+    public static final byte SNAPSHOT = 'S';
+    public static final byte ENTRY = 'E';
+    public static final byte HEARTBEAT = 'H';
+
+    static final byte SENSOR_ADDED = 1;
+    static final byte SENSOR_UPDATED = 2;
+    static final byte SENSOR_REMOVED = 3;
+    static final byte ALARM_STATUS = 4;
+    static final byte ARMING_STATUS = 5;
+    static final byte CAT_STATUS = 6;
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * Asks a node whether it leads.
+     * @return The node's term if it is the leader, or -1 if it isn't or can't be reached
+     */
+    public static long probe(InetSocketAddress address, int timeoutMillis) {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(MAGIC);
+            out.writeLong(PROBE_TERM);
+            out.writeLong(0);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            return in.readByte() == LEADER ? in.readLong() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    static byte[] sensorChange(byte kind, Sensor sensor) {
+        return encode(out -> {
+            out.writeByte(kind);
+            writeSensor(out, sensor);
+        });
+    }
+
+    static byte[] sensorRemoved(UUID sensorId) {
+        return encode(out -> {
+            out.writeByte(SENSOR_REMOVED);
+            out.writeLong(sensorId.getMostSignificantBits());
+            out.writeLong(sensorId.getLeastSignificantBits());
+        });
+    }
+
+    static byte[] alarmStatus(AlarmStatus alarmStatus) {
+        return encode(out -> {
+            out.writeByte(ALARM_STATUS);
+            out.writeByte(alarmStatus.ordinal());
+        });
+    }
+
+    static byte[] armingStatus(ArmingStatus armingStatus) {
+        return encode(out -> {
+            out.writeByte(ARMING_STATUS);
+            out.writeByte(armingStatus.ordinal());
+        });
+    }
+
+    static byte[] catStatus(boolean cat) {
+        return encode(out -> {
+            out.writeByte(CAT_STATUS);
+            out.writeBoolean(cat);
+        });
+    }
+
+    static void writeSensor(DataOutput out, Sensor sensor) throws IOException {
+        out.writeLong(sensor.getSensorId().getMostSignificantBits());
+        out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        out.writeUTF(sensor.getName());
+        out.writeByte(sensor.getSensorType().ordinal());
+        out.writeBoolean(Boolean.TRUE.equals(sensor.getActive()));
+    }
+
+    static Sensor readSensor(DataInput in) throws IOException {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(in.readLong(), in.readLong()));
+        sensor.setName(in.readUTF());
+        sensor.setSensorType(SENSOR_TYPES[in.readUnsignedByte()]);
+        sensor.setActive(in.readBoolean());
+        return sensor;
+    }
+
+    static AlarmStatus readAlarmStatus(DataInput in) throws IOException {
+        return ALARM_STATUSES[in.readUnsignedByte()];
+    }
+
+    static ArmingStatus readArmingStatus(DataInput in) throws IOException {
+        return ARMING_STATUSES[in.readUnsignedByte()];
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //in-memory, doesn't happen
+        }
+        return bytes.toByteArray();
+    }
+}
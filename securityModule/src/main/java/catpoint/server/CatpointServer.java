@@ -0,0 +1,35 @@
+package catpoint.server;
+
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.data.service.FakeImageService;
+import catpoint.service.ConcurrentSecurityService;
+import catpoint.service.SecurityService;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Headless entry point: hosts a {@link SecurityService} behind the {@link SecurityHttpServer} API on
+ * the loopback interface instead of launching the Swing GUI.
+ *
+ * The state is kept in memory by a {@link ShardedSecurityRepositoryImpl} so concurrent requests never
+ * wait on each other for storage. Usage: {@code CatpointServer [port]}, the port defaults to 8080.
+ */
+public class CatpointServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        SecurityService securityService = new ConcurrentSecurityService(new ShardedSecurityRepositoryImpl(), new FakeImageService());
+        SecurityHttpServer server = new SecurityHttpServer(securityService,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "catpoint-http-shutdown"));
+        server.start();
+        System.out.printf("Catpoint API listening on http://%s:%d/ (%s)%n",
+                server.getAddress().getHostString(), server.getAddress().getPort(),
+                server.usesVirtualThreads() ? "virtual thread per request" : "cached thread pool");
+    }
+}
@@ -0,0 +1,318 @@
+package catpoint.server;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.CatpointGson;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import catpoint.metrics.LatencyHistogram;
+import catpoint.service.SecurityService;
+import catpoint.service.TaskThreads;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP/JSON control API in front of a {@link SecurityService}.
+ *
+ * <pre>
+ * GET    /status                  alarm status, arming status and sensor counts
+ * PUT    /arming                  {"armingStatus": "ARMED_HOME"}
+ * GET    /sensors                 all sensors
+ * POST   /sensors                 {"name": "Front Door", "sensorType": "DOOR"}
+ * DELETE /sensors/{id}
+ * PUT    /sensors/{id}/active     {"active": true}
+ * POST   /images                  a PNG or JPEG image to scan for cats
+ * </pre>
+ *
+ * Sensors are encoded by {@link CatpointGson}, and ids in paths may be in its compact or the canonical form.
+ * Each request runs on its own thread: a virtual thread when the runtime has them, otherwise a thread
+ * from a cached pool. Requests are not serialized here, so the service must tolerate concurrent calls,
+ * as {@link catpoint.service.ConcurrentSecurityService} over a concurrent repository does.
+ */
+public class SecurityHttpServer implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(SecurityHttpServer.class.getName());
+
+    private static final int MAX_JSON_BYTES = 64 * 1024;
+    private static final int MAX_IMAGE_BYTES = 16 * 1024 * 1024;
+
+    private final SecurityService securityService;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final boolean virtualThreads;
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    /**
+     * Binds the server without starting it.
+     * @param address Address to listen on, use port 0 for any free port
+     */
+    public SecurityHttpServer(SecurityService securityService, InetSocketAddress address) {
+        this.securityService = securityService;
+        this.virtualThreads = TaskThreads.virtualThreadsAvailable();
+        this.requestExecutor = TaskThreads.newThreadPerTaskExecutor("catpoint-http");
+        try {
+            server = HttpServer.create(address, 1024);
+        } catch (IOException e) {
+            requestExecutor.shutdown();
+            throw new UncheckedIOException("Unable to bind " + address, e);
+        }
+        server.setExecutor(requestExecutor);
+        server.createContext("/status", timed(this::handleStatus));
+        server.createContext("/arming", timed(this::handleArming));
+        server.createContext("/sensors", timed(this::handleSensors));
+        server.createContext("/images", timed(this::handleImages));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return The bound address, with the actual port if port 0 was requested
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return True if requests run on virtual threads, false if they run on the cached pool
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Time spent handling each request in nanoseconds, from dispatch until the response is written.
+     */
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * Stops accepting requests, gives running ones a second to finish and stops the request threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        requestExecutor.shutdown();
+        try {
+            requestExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        sendJson(exchange, 200, status());
+    }
+
+    private void handleArming(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "PUT");
+        JsonObject body = readJsonObject(exchange);
+        securityService.setArmingStatus(enumField(body, "armingStatus", ArmingStatus.class));
+        sendJson(exchange, 200, status());
+    }
+
+    private void handleSensors(HttpExchange exchange) throws IOException {
+        //the context also receives /sensors/{id} and /sensors/{id}/active
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        String method = exchange.getRequestMethod();
+        if (!path[1].equals("sensors")) {
+            throw new ApiException(404, "No such resource");
+        } else if (path.length == 2) {
+            switch (method) {
+                case "GET" -> sendJson(exchange, 200, sensors());
+                case "POST" -> {
+                    JsonObject body = readJsonObject(exchange);
+                    Sensor sensor = new Sensor(stringField(body, "name"), enumField(body, "sensorType", SensorType.class));
+                    securityService.addSensor(sensor);
+                    sendJson(exchange, 201, CatpointGson.GSON.toJsonTree(sensor));
+                }
+                default -> throw new ApiException(405, "Use GET or POST on /sensors");
+            }
+        } else if (path.length == 3) {
+            requireMethod(exchange, "DELETE");
+            securityService.removeSensor(findSensor(path[2]));
+            sendEmpty(exchange, 204);
+        } else if (path.length == 4 && path[3].equals("active")) {
+            requireMethod(exchange, "PUT");
+            Sensor sensor = findSensor(path[2]);
+            JsonElement active = readJsonObject(exchange).get("active");
+            if (active == null || !active.isJsonPrimitive() || !active.getAsJsonPrimitive().isBoolean()) {
+                throw new ApiException(400, "Expected a boolean field active");
+            }
+            securityService.changeSensorActivationStatus(sensor, active.getAsBoolean());
+            sendJson(exchange, 200, CatpointGson.GSON.toJsonTree(sensor));
+        } else {
+            throw new ApiException(404, "No such resource");
+        }
+    }
+
+    private void handleImages(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(readBody(exchange, MAX_IMAGE_BYTES)));
+        if (image == null) {
+            throw new ApiException(415, "Expected a PNG or JPEG image");
+        }
+        securityService.processImage(image);
+        sendJson(exchange, 200, status());
+    }
+
+    private JsonObject status() {
+        JsonObject status = new JsonObject();
+        AlarmStatus alarmStatus = securityService.getAlarmStatus();
+        status.addProperty("alarmStatus", alarmStatus.name());
+        status.addProperty("armingStatus", securityService.getArmingStatus().name());
+        status.addProperty("sensorCount", securityService.getSensorCount());
+        status.addProperty("activeSensorCount", securityService.getActiveSensorCount());
+        return status;
+    }
+
+    private JsonArray sensors() {
+        JsonArray sensors = new JsonArray();
+        for (Sensor sensor : securityService.getSensors()) {
+            sensors.add(CatpointGson.GSON.toJsonTree(sensor));
+        }
+        return sensors;
+    }
+
+    private Sensor findSensor(String id) {
+        UUID sensorId;
+        try {
+            sensorId = CatpointGson.parseUuid(id);
+        } catch (JsonParseException e) {
+            throw new ApiException(400, "Malformed sensor id " + id);
+        }
+        Sensor sensor = securityService.getSensor(sensorId);
+        if (sensor == null) {
+            throw new ApiException(404, "No sensor " + id);
+        }
+        return sensor;
+    }
+
+    /**
+     * Runs a handler, turning {@link ApiException}s and malformed JSON into error responses and
+     * recording how long the request took. A handler that fails after it started its response can't be
+     * answered with an error any more; the exchange is just closed, which cuts the response short.
+     */
+    HttpHandler timed(HttpHandler handler) {
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } catch (ApiException e) {
+                sendErrorUnlessStarted(exchange, e.status, e.getMessage());
+            } catch (JsonParseException e) {
+                sendErrorUnlessStarted(exchange, 400, "Malformed request body");
+            } catch (RuntimeException e) {
+                //the details stay in the log, they are no business of the client
+                LOG.log(System.Logger.Level.ERROR, "Failed to handle " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI().getPath(), e);
+                sendErrorUnlessStarted(exchange, 500, "Internal server error");
+            } finally {
+                exchange.close();
+                requestLatency.recordValue(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new ApiException(405, "Use " + method + " on " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private static JsonObject readJsonObject(HttpExchange exchange) throws IOException {
+        String body = new String(readBody(exchange, MAX_JSON_BYTES), StandardCharsets.UTF_8);
+        JsonElement json = JsonParser.parseString(body);
+        if (!json.isJsonObject()) {
+            throw new ApiException(400, "Expected a JSON object");
+        }
+        return json.getAsJsonObject();
+    }
+
+    private static byte[] readBody(HttpExchange exchange, int limit) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(limit + 1);
+            if (body.length > limit) {
+                throw new ApiException(413, "Request body larger than " + limit + " bytes");
+            }
+            return body;
+        }
+    }
+
+    private static String stringField(JsonObject body, String field) {
+        JsonElement value = body.get(field);
+        if (value == null || !value.isJsonPrimitive() || value.getAsString().isBlank()) {
+            throw new ApiException(400, "Expected a string field " + field);
+        }
+        return value.getAsString();
+    }
+
+    private static <E extends Enum<E>> E enumField(JsonObject body, String field, Class<E> type) {
+        String value = stringField(body, field);
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Unknown " + type.getSimpleName() + " " + value);
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonElement body) throws IOException {
+        byte[] bytes = CatpointGson.GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static void sendErrorUnlessStarted(HttpExchange exchange, int status, String message) throws IOException {
+        //the response code is only set once the headers went out, and they can't be sent twice
+        if (exchange.getResponseCode() == -1) {
+            sendError(exchange, status, message);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        sendJson(exchange, status, error);
+    }
+
+    /**
+     * Aborts a request with the given HTTP status.
+     */
+    private static class ApiException extends RuntimeException {
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package catpoint.service;
+
+import catpoint.application.StatusListener;
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorStateIndex;
+import catpoint.metrics.Operation;
+import catpoint.metrics.SecurityMetrics;
+import service.ImageServiceInterface;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe variant of {@link SecurityService} for sensor events arriving from many threads at once.
+ *
+ * The arming status, alarm status and cat status are held together as one immutable {@link SecurityState}
+ * and every transition is applied with a compare-and-set retry loop, so two sensors firing together can
+ * never lose a PENDING_ALARM to ALARM step. Only the state that changed is written through to the repository,
+ * and writers re-check the state after publishing so the repository and listeners always settle on the latest
+ * state even when publications from different threads interleave. The rule helpers inherited from
+ * {@link SecurityService} that set an alarm status go through the same compare-and-set, so nothing writes
+ * an alarm status to the repository behind the state's back.
+ *
+ * The repository passed in must itself tolerate concurrent calls.
+ */
+public class ConcurrentSecurityService extends SecurityService {
+
+    private final AtomicReference<SecurityState> state;
+
+    public ConcurrentSecurityService(SecurityRepository securityRepository, ImageServiceInterface imageService) {
+        super(securityRepository, imageService);
+        state = new AtomicReference<>(new SecurityState(securityRepository.getArmingStatus(),
+                securityRepository.getAlarmStatus(), securityRepository.getCatStatus()));
+    }
+
+    /**
+     * @return The current state snapshot
+     */
+    public SecurityState getState() {
+        return state.get();
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.SET_ARMING_STATUS);
+        try {
+            SecurityState[] transition = transition(s -> s.afterArmingChange(armingStatus));
+            SecurityState before = transition[0];
+            boolean soundedForCat = before.getArmingStatus() == ArmingStatus.DISARMED && before.isCatDetected();
+            if (!soundedForCat && transition[1].isArmed()) {
+                resetSensors(securityRepository.getSensors());
+            }
+            fireListeners(StatusListener::sensorStatusChanged);
+            publish(before, transition[1]);
+        } finally {
+            metrics.end(Operation.SET_ARMING_STATUS, start);
+        }
+    }
+
+    @Override
+    public Set<Sensor> resetSensors(Set<Sensor> sensors) {
+        SensorStateIndex index = securityRepository.getSensorStateIndex();
+        for (Sensor s : sensors) {
+            synchronized (s) {
+                s.setActive(false);
+                if (index != null) {
+                    index.update(s);
+                }
+            }
+        }
+        return sensors;
+    }
+
+    @Override
+    void catDetected(Boolean cat) {
+        fireListeners(sl -> sl.catDetected(cat));
+        boolean active;
+        boolean hasSensors;
+        SensorStateIndex index = securityRepository.getSensorStateIndex();
+        if (index != null) {
+            active = index.anyActive();
+            hasSensors = index.size() > 0;
+        } else {
+            Set<Sensor> sensors = securityRepository.getSensors();
+            boolean anySensorActive = false;
+            for (Sensor sensor : sensors) {
+                if (Boolean.TRUE.equals(sensor.getActive())) {
+                    anySensorActive = true;
+                    break;
+                }
+            }
+            active = anySensorActive;
+            hasSensors = !sensors.isEmpty();
+        }
+        apply(s -> s.afterCatDetected(cat, active, hasSensors));
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.SET_ALARM_STATUS);
+        try {
+            apply(s -> s.withAlarmStatus(status));
+        } finally {
+            metrics.end(Operation.SET_ALARM_STATUS, start);
+        }
+    }
+
+    @Override
+    public void noAlarmSet(AlarmStatus alarmStatus, Set<Sensor> sensors) {
+        AlarmStatus status = alarmStatus == AlarmStatus.PENDING_ALARM && !anySensorActive(sensors)
+                ? AlarmStatus.NO_ALARM : alarmStatus;
+        apply(s -> s.withAlarmStatus(status));
+    }
+
+    @Override
+    public AlarmStatus sensorAlreadyActivated(Sensor sensor, boolean wishToActivate, AlarmStatus alarmStatus) {
+        boolean alreadyActive;
+        synchronized (sensor) {
+            alreadyActive = Boolean.TRUE.equals(sensor.getActive());
+        }
+        if (alreadyActive && wishToActivate && alarmStatus == AlarmStatus.PENDING_ALARM) {
+            apply(s -> s.withAlarmStatus(AlarmStatus.ALARM));
+            return AlarmStatus.ALARM;
+        }
+        if (!alreadyActive && !wishToActivate) {
+            apply(s -> s.withAlarmStatus(alarmStatus));
+            return alarmStatus;
+        }
+        return AlarmStatus.NO_ALARM;
+    }
+
+    @Override
+    public Set<Sensor> resetTheSensors(ArmingStatus armingStatus, Set<Sensor> sensors) {
+        if (armingStatus != ArmingStatus.DISARMED) {
+            for (Sensor sensor : sensors) {
+                synchronized (sensor) {
+                    sensor.setActive(false);
+                }
+            }
+            securityRepository.updateSensors(sensors);
+        }
+        return sensors;
+    }
+
+    @Override
+    public void handleSensorActivated() {
+        apply(SecurityState::afterSensorActivated);
+    }
+
+    @Override
+    public void handleSensorDeactivated() {
+        apply(SecurityState::afterSensorDeactivated);
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.CHANGE_SENSOR_ACTIVATION);
+        try {
+            boolean wasActive;
+            //only events for the same sensor contend here, the alarm state itself is never locked
+            synchronized (sensor) {
+                wasActive = Boolean.TRUE.equals(sensor.getActive());
+                sensor.setActive(active);
+            }
+            apply(s -> s.afterSensorChange(wasActive, active));
+            securityRepository.updateSensor(sensor);
+        } finally {
+            metrics.end(Operation.CHANGE_SENSOR_ACTIVATION, start);
+        }
+    }
+
+    /**
+     * Applies the batch with a single compare-and-set of the state, so no other transition can land
+     * between two events of the same batch.
+     */
+    @Override
+    public void applySensorEvents(Collection<SensorEvent> events) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.APPLY_SENSOR_EVENTS);
+        try {
+            List<boolean[]> changes = new ArrayList<>(events.size());
+            Set<Sensor> changed = new LinkedHashSet<>();
+            for (SensorEvent event : events) {
+                Sensor sensor = event.getSensor();
+                synchronized (sensor) {
+                    changes.add(new boolean[]{Boolean.TRUE.equals(sensor.getActive()), event.isActive()});
+                    sensor.setActive(event.isActive());
+                }
+                changed.add(sensor);
+            }
+            SecurityState[] transition = transition(s -> {
+                for (boolean[] change : changes) {
+                    s = s.afterSensorChange(change[0], change[1]);
+                }
+                return s;
+            });
+            publish(transition[0], transition[1]);
+            if (!changed.isEmpty()) {
+                securityRepository.updateSensors(changed);
+                fireListeners(sl -> sl.sensorsChanged(changed));
+            }
+        } finally {
+            metrics.end(Operation.APPLY_SENSOR_EVENTS, start);
+        }
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return state.get().getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return state.get().getArmingStatus();
+    }
+
+    private void apply(UnaryOperator<SecurityState> update) {
+        SecurityState[] transition = transition(update);
+        publish(transition[0], transition[1]);
+    }
+
+    /**
+     * Applies the update with a CAS retry loop.
+     * @return The state the update was applied to and the resulting state
+     */
+    private SecurityState[] transition(UnaryOperator<SecurityState> update) {
+        SecurityState before;
+        SecurityState after;
+        do {
+            before = state.get();
+            after = update.apply(before);
+        } while (before != after && !state.compareAndSet(before, after));
+        return new SecurityState[]{before, after};
+    }
+
+    /**
+     * Writes the parts of the state that changed to the repository and notifies listeners of alarm changes.
+     * If another thread moved the state on in the meantime, its newer state is published as well, so a
+     * stale write from this thread can never be the last one.
+     */
+    private void publish(SecurityState from, SecurityState to) {
+        while (from != to) {
+            if (from.getArmingStatus() != to.getArmingStatus()) {
+                metrics.recordTransition(from.getArmingStatus(), to.getArmingStatus());
+                securityRepository.setArmingStatus(to.getArmingStatus());
+            }
+            if (from.isCatDetected() != to.isCatDetected()) {
+                securityRepository.setCatStatus(to.isCatDetected());
+            }
+            if (from.getAlarmStatus() != to.getAlarmStatus()) {
+                AlarmStatus status = to.getAlarmStatus();
+                metrics.recordTransition(from.getAlarmStatus(), status);
+                securityRepository.setAlarmStatus(status);
+                fireListeners(sl -> sl.notify(status));
+            }
+            from = to;
+            to = state.get();
+        }
+    }
+}
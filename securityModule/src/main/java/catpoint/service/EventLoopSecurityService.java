@@ -0,0 +1,281 @@
+package catpoint.service;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.metrics.LatencyHistogram;
+import service.ImageServiceInterface;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Variant of {@link SecurityService} that never runs the alarm logic on the caller's thread. Every
+ * mutating call is turned into an event and queued in a bounded {@link MpscRingBuffer}; a single
+ * dedicated thread drains the queue in batches and applies each event through the regular
+ * {@link SecurityService} rules, so state transitions stay single-threaded and deterministic no matter
+ * how many threads produce events. That includes the alarm status and adding or removing sensors, so the
+ * repository is only ever written from the event thread. A mutation made on the event thread itself, for
+ * example by a listener reacting to a notification, is applied right away instead of being queued, since
+ * the thread would otherwise wait on a full queue that only it can drain.
+ *
+ * When producers outrun the event thread the buffer fills up and producers wait for free space,
+ * which pushes the backpressure back onto them. For each event type the time between enqueueing and
+ * applying an event is recorded in a {@link LatencyHistogram}.
+ *
+ * Image analysis itself still runs on the caller's thread; only its result is queued.
+ */
+public class EventLoopSecurityService extends SecurityService implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * The kinds of events the loop applies.
+     */
+    public enum EventType {
+        SENSOR_ACTIVATION, SENSOR_BATCH, ARMING_STATUS, ALARM_STATUS, ADD_SENSOR, REMOVE_SENSOR, IMAGE_RESULT,
+        CAT_DETECTED, BARRIER
+    }
+
+    private final MpscRingBuffer<Event> events;
+    private final int batchSize;
+    private final Map<EventType, LatencyHistogram> latencies = new EnumMap<>(EventType.class);
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    //producers between their running check and the end of their offer; the loop outlives all of them
+    private final AtomicInteger activeProducers = new AtomicInteger();
+    private final Thread eventThread;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+
+    public EventLoopSecurityService(SecurityRepository securityRepository, ImageServiceInterface imageService) {
+        this(securityRepository, imageService, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param capacity Maximum number of queued events before producers are made to wait
+     * @param batchSize Maximum number of events applied per drain of the queue
+     */
+    public EventLoopSecurityService(SecurityRepository securityRepository, ImageServiceInterface imageService,
+                                    int capacity, int batchSize) {
+        super(securityRepository, imageService);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.events = new MpscRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        for (EventType type : EventType.values()) {
+            latencies.put(type, new LatencyHistogram());
+        }
+        eventThread = new Thread(this::runLoop, "catpoint-event-loop");
+        eventThread.setDaemon(true);
+        eventThread.start();
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        Event event = new Event(EventType.SENSOR_ACTIVATION);
+        event.sensor = sensor;
+        event.flag = active;
+        enqueue(event);
+    }
+
+    /**
+     * Queues the whole batch as one event, so it is applied without other events in between.
+     */
+    @Override
+    public void applySensorEvents(Collection<SensorEvent> sensorEvents) {
+        Event event = new Event(EventType.SENSOR_BATCH);
+        event.batch = new ArrayList<>(sensorEvents);
+        enqueue(event);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        Event event = new Event(EventType.ARMING_STATUS);
+        event.armingStatus = armingStatus;
+        enqueue(event);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        Event event = new Event(EventType.ALARM_STATUS);
+        event.alarmStatus = status;
+        enqueue(event);
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        Event event = new Event(EventType.ADD_SENSOR);
+        event.sensor = sensor;
+        enqueue(event);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        Event event = new Event(EventType.REMOVE_SENSOR);
+        event.sensor = sensor;
+        enqueue(event);
+    }
+
+    @Override
+    public void processImage(BufferedImage currentCameraImage) {
+        Event event = new Event(EventType.IMAGE_RESULT);
+        event.flag = detectCat(currentCameraImage);
+        enqueue(event);
+    }
+
+    @Override
+    void catDetected(Boolean cat) {
+        Event event = new Event(EventType.CAT_DETECTED);
+        event.flag = cat;
+        enqueue(event);
+    }
+
+    /**
+     * Blocks until every event queued before this call has been applied.
+     * @return False if the timeout elapsed first
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        Event barrier = new Event(EventType.BARRIER);
+        barrier.applied = new CountDownLatch(1);
+        enqueue(barrier);
+        return barrier.applied.await(timeout, unit);
+    }
+
+    /**
+     * @return Enqueue-to-applied latency in nanoseconds for events of the given type
+     */
+    public LatencyHistogram getLatencyHistogram(EventType type) {
+        return latencies.get(type);
+    }
+
+    /**
+     * @return How many times a producer found the queue full and had to wait
+     */
+    public long getBackpressureWaits() {
+        return backpressureWaits.get();
+    }
+
+    /**
+     * @return Number of non-empty batches drained so far
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public int getQueuedEvents() {
+        return events.size();
+    }
+
+    /**
+     * Stops accepting events, applies everything already queued and stops the event thread. A call racing
+     * with this one either fails with an {@link IllegalStateException} or has its event applied, never
+     * neither.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(eventThread);
+        eventThread.join();
+    }
+
+    private void enqueue(Event event) {
+        if (Thread.currentThread() == eventThread) {
+            //already the single writer, and waiting for queue space here would wait on ourselves
+            event.enqueuedNanos = System.nanoTime();
+            apply(event);
+            return;
+        }
+        //announce the offer before checking running, so the loop either sees this producer or this producer sees it closing
+        activeProducers.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Event loop has been closed");
+            }
+            event.enqueuedNanos = System.nanoTime();
+            if (!events.offer(event)) {
+                backpressureWaits.incrementAndGet();
+                do {
+                    wakeEventThread();
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                    if (!running) {
+                        throw new IllegalStateException("Event loop has been closed");
+                    }
+                } while (!events.offer(event));
+            }
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+        wakeEventThread();
+    }
+
+    private void wakeEventThread() {
+        if (sleeping) {
+            LockSupport.unpark(eventThread);
+        }
+    }
+
+    private void runLoop() {
+        while (running || activeProducers.get() > 0 || !events.isEmpty()) {
+            int drained = events.drain(this::apply, batchSize);
+            if (drained > 0) {
+                batches.incrementAndGet();
+                continue;
+            }
+            sleeping = true;
+            //re-check after announcing we sleep, so an event published in between is not missed for a whole park
+            if (events.isEmpty() && running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void apply(Event event) {
+        try {
+            switch (event.type) {
+                case SENSOR_ACTIVATION -> super.changeSensorActivationStatus(event.sensor, event.flag);
+                case SENSOR_BATCH -> super.applySensorEvents(event.batch);
+                case ARMING_STATUS -> super.setArmingStatus(event.armingStatus);
+                case ALARM_STATUS -> super.setAlarmStatus(event.alarmStatus);
+                case ADD_SENSOR -> super.addSensor(event.sensor);
+                case REMOVE_SENSOR -> super.removeSensor(event.sensor);
+                case IMAGE_RESULT, CAT_DETECTED -> super.catDetected(event.flag);
+                case BARRIER -> event.applied.countDown();
+            }
+        } catch (RuntimeException e) {
+            //one bad event must not take the loop down with it
+            eventThread.getUncaughtExceptionHandler().uncaughtException(eventThread, e);
+        }
+        latencies.get(event.type).recordValue(System.nanoTime() - event.enqueuedNanos);
+    }
+
+    private static final class Event {
+        private final EventType type;
+        private long enqueuedNanos;
+        private Sensor sensor;
+        private boolean flag;
+        private ArmingStatus armingStatus;
+        private AlarmStatus alarmStatus;
+        private Collection<SensorEvent> batch;
+        private CountDownLatch applied;
+
+        private Event(EventType type) {
+            this.type = type;
+        }
+    }
+}
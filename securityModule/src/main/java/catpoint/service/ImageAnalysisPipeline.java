@@ -0,0 +1,108 @@
+package catpoint.service;
+
+import service.AsyncImageServiceInterface;
+import service.ImageServiceInterface;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs image analysis off the caller's thread. At most {@code maxConcurrent} detections are in flight
+ * at any time; requests beyond that are rejected straight away rather than queued, so a slow detector
+ * can never build up a backlog of stale frames. A caller waiting longer than the configured timeout gets a
+ * {@link java.util.concurrent.TimeoutException}, though the detection keeps its slot until it actually finishes.
+ */
+public class ImageAnalysisPipeline {
+
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final AsyncImageServiceInterface imageService;
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public ImageAnalysisPipeline(AsyncImageServiceInterface imageService, int maxConcurrent, Duration timeout) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be positive");
+        }
+        this.imageService = imageService;
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Creates a pipeline for any image service. Blocking services get a dedicated pool of
+     * {@code maxConcurrent} daemon threads to run on.
+     */
+    public static ImageAnalysisPipeline forService(ImageServiceInterface imageService, int maxConcurrent, Duration timeout) {
+        if (imageService instanceof AsyncImageServiceInterface) {
+            return new ImageAnalysisPipeline((AsyncImageServiceInterface) imageService, maxConcurrent, timeout);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrent, r -> {
+            Thread t = new Thread(r, "catpoint-image-analysis-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        return new ImageAnalysisPipeline(AsyncImageServiceInterface.fromBlocking(imageService, executor), maxConcurrent, timeout);
+    }
+
+    /**
+     * Starts analyzing an image.
+     * @return A future completed with the detector's verdict, or failed if the pipeline is saturated,
+     * the detection timed out, or the detector threw
+     */
+    public CompletableFuture<Boolean> submit(BufferedImage image, float confidenceThreshhold) {
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many image analyses in flight"));
+        }
+        CompletableFuture<Boolean> detection;
+        try {
+            detection = imageService.imageContainsCatAsync(image, confidenceThreshhold);
+        } catch (RuntimeException e) {
+            detection = CompletableFuture.failedFuture(e);
+        }
+        //the permit is held until the detector is really done, even if the caller stopped waiting for it
+        detection.whenComplete((cat, error) -> permits.release());
+        return detection.copy()
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((cat, error) -> {
+                    if (error == null) {
+                        completed.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                });
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return Number of detections that timed out or threw
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,107 @@
+package catpoint.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free ring buffer for many producer threads and a single consumer thread.
+ *
+ * Each slot carries a sequence number telling producers and the consumer whose turn it is, so
+ * producers only contend on a single compare-and-set of the tail and the consumer never needs
+ * atomic updates at all. {@link #drain(Consumer, int)} must only ever be called from one thread.
+ *
+ * @param <E> Element type
+ */
+public class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; //only touched by the consumer
+
+    /**
+     * @param requestedCapacity Minimum capacity, rounded up to the next power of two
+     */
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = 1;
+        while (size < requestedCapacity) {
+            size <<= 1;
+        }
+        capacity = size;
+        mask = capacity - 1;
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds an element if there is room.
+     * @return False if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1); //publishes the element to the consumer
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            //another producer claimed this slot first, try the next one
+        }
+    }
+
+    /**
+     * Hands up to {@code limit} elements to the consumer, oldest first.
+     * @return The number of elements drained
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        while (drained < limit) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break; //empty, or a producer has claimed the slot but not yet published
+            }
+            E element = elements.get(index);
+            elements.lazySet(index, null);
+            sequences.set(index, head + capacity); //frees the slot for the producer one lap ahead
+            head++;
+            drained++;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * @return An estimate of the number of queued elements
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -1,10 +1,20 @@
 package catpoint.service;
 import catpoint.application.StatusListener;
 import catpoint.data.*;
+import catpoint.metrics.Operation;
+import catpoint.metrics.SecurityMetrics;
 import service.ImageServiceInterface;
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 
 /**
@@ -16,9 +26,17 @@ import java.util.Set;
  */
 public class SecurityService {
     private ImageServiceInterface imageService;
-    private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
+    final SecurityRepository securityRepository;
+    //copy-on-write so listeners can be notified from any thread while others register
+    final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
     private boolean catStat = false;
+    private volatile ImageAnalysisPipeline imagePipeline;
+    private volatile Executor verdictExecutor;
+    //sequence of the latest processImageAsync call, and of the latest one whose verdict was applied
+    private final AtomicLong imageSubmissions = new AtomicLong();
+    private final AtomicLong appliedImageSubmission = new AtomicLong();
+    private StatusNotificationBus notificationBus;
+    volatile SecurityMetrics metrics = SecurityMetrics.DISABLED;
     ArmingStatus current;
 
 
@@ -37,21 +55,30 @@ public class SecurityService {
 
 
     public  void setArmingStatus(ArmingStatus armingStatus) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.SET_ARMING_STATUS);
+        try {
+            if(armingStatus == ArmingStatus.DISARMED)
+            {setAlarmStatus(AlarmStatus.NO_ALARM);}
+            if(saveArmingStatus() == ArmingStatus.DISARMED && securityRepository.getCatStatus()) {
 
-        if(armingStatus == ArmingStatus.DISARMED)
-        {setAlarmStatus(AlarmStatus.NO_ALARM);}
-        if(saveArmingStatus() == ArmingStatus.DISARMED && securityRepository.getCatStatus()) {
-
-            setAlarmStatus(AlarmStatus.ALARM);
-        }
-        else if(armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
+                setAlarmStatus(AlarmStatus.ALARM);
+            }
+            else if(armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
 
-            resetSensors(securityRepository.getSensors());
-//            for(Sensor s : securityRepository.getSensors())
-//            {s.setActive(false);}
+                resetSensors(securityRepository.getSensors());
+//                for(Sensor s : securityRepository.getSensors())
+//                {s.setActive(false);}
+            }
+            fireListeners(StatusListener::sensorStatusChanged);
+            if (metrics.isEnabled()) {
+                metrics.recordTransition(current, armingStatus);
+            }
+            securityRepository.setArmingStatus(armingStatus);
+        } finally {
+            metrics.end(Operation.SET_ARMING_STATUS, start);
         }
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
-        securityRepository.setArmingStatus(armingStatus);}
+    }
     public ArmingStatus saveArmingStatus()
     {
         current = getArmingStatus();
@@ -60,9 +87,13 @@ public class SecurityService {
 
     public Set<Sensor> resetSensors(Set<Sensor> sensors)
     {
+        SensorStateIndex index = securityRepository.getSensorStateIndex();
         for(Sensor s : sensors)
         {
             s.setActive(false);
+            if (index != null) {
+                index.update(s);
+            }
         }
         return sensors;
     }
@@ -76,7 +107,7 @@ public class SecurityService {
 
     void catDetected(Boolean cat) {
 
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        fireListeners(sl -> sl.catDetected(cat));
         securityRepository.setCatStatus(cat);
         catStat = securityRepository.getCatStatus();
 
@@ -86,17 +117,27 @@ public class SecurityService {
         }
         else if (!catStat && getArmingStatus() == ArmingStatus.ARMED_HOME  || !catStat && getArmingStatus() == ArmingStatus.ARMED_AWAY )
         {
-            for(Sensor sensor : securityRepository.getSensors())
-            {
-                if (sensor.getActive())
-                {
+            SensorStateIndex index = securityRepository.getSensorStateIndex();
+            if (index != null) {
+                //the index answers "is any sensor active?" without walking the sensors
+                if (index.anyActive()) {
                     setAlarmStatus(AlarmStatus.ALARM);
-                    securityRepository.updateSensor(sensor);
-                    break;
-                }else
-                {
+                } else if (index.size() > 0) {
                     setAlarmStatus(AlarmStatus.NO_ALARM);
                 }
+            } else {
+                for(Sensor sensor : securityRepository.getSensors())
+                {
+                    if (sensor.getActive())
+                    {
+                        setAlarmStatus(AlarmStatus.ALARM);
+                        securityRepository.updateSensor(sensor);
+                        break;
+                    }else
+                    {
+                        setAlarmStatus(AlarmStatus.NO_ALARM);
+                    }
+                }
             }
         }
         else {setAlarmStatus(AlarmStatus.NO_ALARM);}}
@@ -105,8 +146,29 @@ public class SecurityService {
      * Register the StatusListener for alarm system updates from within the SecurityService.
      * @param statusListener
      */
-    public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+    public synchronized void addStatusListener(StatusListener statusListener) {
+        if (notificationBus != null) {
+            notificationBus.register(statusListener);
+        } else {
+            statusListeners.add(statusListener);
+        }
+    }
+
+    /**
+     * Routes all listener callbacks through the given bus, so they are delivered asynchronously and coalesced
+     * per frame instead of being called on the thread that changed the state. Listeners registered earlier
+     * are moved onto the bus.
+     * @param bus
+     */
+    public synchronized void useNotificationBus(StatusNotificationBus bus) {
+        for (StatusListener listener : statusListeners) {
+            if (listener != notificationBus) {
+                bus.register(listener);
+            }
+        }
+        statusListeners.clear();
+        statusListeners.add(bus);
+        notificationBus = bus;
     }
 //    public void removeStatusListener(StatusListener statusListener) {statusListeners.remove(statusListener);}
     /**
@@ -114,8 +176,46 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));}
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.SET_ALARM_STATUS);
+        try {
+            if (metrics.isEnabled()) {
+                metrics.recordTransition(securityRepository.getAlarmStatus(), status);
+            }
+            securityRepository.setAlarmStatus(status);
+            fireListeners(sl -> sl.notify(status));
+        } finally {
+            metrics.end(Operation.SET_ALARM_STATUS, start);
+        }
+    }
+
+    /**
+     * Calls every registered listener, timing the whole fan-out.
+     */
+    void fireListeners(Consumer<StatusListener> callback) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.LISTENER_FANOUT);
+        try {
+            statusListeners.forEach(callback);
+        } finally {
+            metrics.end(Operation.LISTENER_FANOUT, start);
+        }
+    }
+
+    /**
+     * Starts recording counters, latencies and state transitions into the given metrics. Pass
+     * {@link SecurityMetrics#DISABLED} to stop. Wrap the repository and image service in
+     * {@link catpoint.metrics.MeteredSecurityRepository} and {@link catpoint.metrics.MeteredImageService}
+     * to time persistence and detection as well.
+     * @param metrics
+     */
+    public void setMetrics(SecurityMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SecurityMetrics getMetrics() {
+        return metrics;
+    }
     /**
      * Internal method for updating the alarm status when a sensor has been deactivated
      */
@@ -150,15 +250,7 @@ public class SecurityService {
         boolean activeSensor = false;
         if(alarmStatus == AlarmStatus.PENDING_ALARM)
         {
-            for(Sensor sensor: sensors)
-            {
-                if(sensor.getActive()) //if a sensor is active
-                {
-                    activeSensor = true;
-                    break;
-                }else{activeSensor = false;}
-
-            }
+            activeSensor = anySensorActive(sensors);
         }if(activeSensor == false && alarmStatus == AlarmStatus.PENDING_ALARM)
         {
                 securityRepository.setAlarmStatus(AlarmStatus.NO_ALARM);
@@ -187,14 +279,66 @@ public class SecurityService {
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) { //Works with test 4 GUI PORTION
-        if(securityRepository.getAlarmStatus()!=AlarmStatus.ALARM) {
-            if (!sensor.getActive() && active) {
-                handleSensorActivated();
-            } else if (sensor.getActive() && !active) {
-                handleSensorDeactivated();
-            }}
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.CHANGE_SENSOR_ACTIVATION);
+        try {
+            if(securityRepository.getAlarmStatus()!=AlarmStatus.ALARM) {
+                if (!sensor.getActive() && active) {
+                    handleSensorActivated();
+                } else if (sensor.getActive() && !active) {
+                    handleSensorDeactivated();
+                }}
+            sensor.setActive(active);
+            securityRepository.updateSensor(sensor);
+        } finally {
+            metrics.end(Operation.CHANGE_SENSOR_ACTIVATION, start);
+        }
+    }
+
+    /**
+     * Applies a batch of sensor activation changes, in order. The resulting alarm status is the same as
+     * calling {@link #changeSensorActivationStatus(Sensor, Boolean)} once per event, but the changed sensors
+     * are persisted with one {@link SecurityRepository#updateSensors(Collection)} call at the end, the
+     * alarm status is written at most once, and listeners hear about the batch once: one alarm status
+     * notification if it changed and one {@link StatusListener#sensorsChanged(Collection)} naming the
+     * changed sensors.
+     * @param events
+     */
+    public void applySensorEvents(Collection<SensorEvent> events) {
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.APPLY_SENSOR_EVENTS);
+        try {
+            SecurityState initial = new SecurityState(securityRepository.getArmingStatus(),
+                    securityRepository.getAlarmStatus(), securityRepository.getCatStatus());
+            SecurityState state = initial;
+            Set<Sensor> changed = new LinkedHashSet<>();
+            for (SensorEvent event : events) {
+                Sensor sensor = event.getSensor();
+                state = state.afterSensorChange(Boolean.TRUE.equals(sensor.getActive()), event.isActive());
+                sensor.setActive(event.isActive());
+                changed.add(sensor);
+            }
+            finishSensorBatch(initial.getAlarmStatus(), state.getAlarmStatus(), changed);
+        } finally {
+            metrics.end(Operation.APPLY_SENSOR_EVENTS, start);
+        }
+    }
+
+    /**
+     * Persists the outcome of a sensor batch and notifies listeners once.
+     */
+    void finishSensorBatch(AlarmStatus before, AlarmStatus after, Set<Sensor> changed) {
+        if (!changed.isEmpty()) {
+            securityRepository.updateSensors(changed);
+        }
+        if (before != after) {
+            metrics.recordTransition(before, after);
+            securityRepository.setAlarmStatus(after);
+            fireListeners(sl -> sl.notify(after));
+        }
+        if (!changed.isEmpty()) {
+            fireListeners(sl -> sl.sensorsChanged(changed));
+        }
     }
 
     public AlarmStatus sensorAlreadyActivated(Sensor sensor, boolean wishToActivate, AlarmStatus alarmStatus) //Works with test 5
@@ -214,15 +358,27 @@ public class SecurityService {
     }
     public AlarmStatus noCatNoAlarmSet(boolean isThereACat, Set<Sensor> sensors) //Works with test 8
     {
-        if(!isThereACat) {
-            for(Sensor sensor: sensors) {
-                if(sensor.getActive()) {
-                    return  AlarmStatus.PENDING_ALARM;
-                }
-            }
+        if(!isThereACat && anySensorActive(sensors)) {
+            return  AlarmStatus.PENDING_ALARM;
         }
         return AlarmStatus.NO_ALARM;
     }
+    /**
+     * Checks whether any of the sensors is active. When they are the repository's own sensors and the
+     * repository keeps a {@link SensorStateIndex}, this is answered by the index instead of a walk over the set.
+     */
+    boolean anySensorActive(Set<Sensor> sensors) {
+        SensorStateIndex index = securityRepository.getSensorStateIndex();
+        if (index != null && sensors == securityRepository.getSensors()) {
+            return index.anyActive();
+        }
+        for(Sensor sensor: sensors) {
+            if(sensor.getActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
     public AlarmStatus noAlarm(ArmingStatus armingStatus) //for test 9
     {
         if(armingStatus.equals(ArmingStatus.DISARMED))
@@ -254,7 +410,95 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.PROCESS_IMAGE);
+        try {
+            catDetected(detectCat(currentCameraImage));
+        } finally {
+            metrics.end(Operation.PROCESS_IMAGE, start);
+        }
+    }
+
+    /**
+     * Sends an image for processing without blocking the caller. Analysis runs through the service's
+     * {@link ImageAnalysisPipeline} and the alarm status is updated once the result arrives, on the
+     * executor set with {@link #setVerdictExecutor(Executor)}. The latest submission wins: a verdict that
+     * arrives after the verdict for a newer image has been applied is dropped.
+     * @param currentCameraImage
+     * @return Future completed with the detector's verdict after it has been applied or dropped
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        long submission = imageSubmissions.incrementAndGet();
+        return getImagePipeline().submit(currentCameraImage, 50.0f).thenApplyAsync(cat -> {
+            if (appliedImageSubmission.getAndAccumulate(submission, Math::max) > submission) {
+                return cat; //a slow verdict for an older frame
+            }
+            SecurityMetrics metrics = this.metrics;
+            long start = metrics.begin(Operation.PROCESS_IMAGE);
+            try {
+                catDetected(cat);
+            } finally {
+                metrics.end(Operation.PROCESS_IMAGE, start);
+            }
+            return cat;
+        }, getVerdictExecutor());
+    }
+
+    /**
+     * Sets where verdicts from {@link #processImageAsync(BufferedImage)} are applied. This should be the
+     * thread that makes the service's other changes, such as the Swing EDT in the GUI, since this class
+     * is not thread-safe. By default they are applied one at a time on a thread of the service's own.
+     */
+    public void setVerdictExecutor(Executor verdictExecutor) {
+        this.verdictExecutor = verdictExecutor;
+    }
+
+    Executor getVerdictExecutor() {
+        Executor executor = verdictExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = verdictExecutor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, "catpoint-image-verdicts");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    verdictExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the pipeline used by {@link #processImageAsync(BufferedImage)}, for example to change
+     * its concurrency limit or timeout.
+     */
+    public void setImagePipeline(ImageAnalysisPipeline imagePipeline) {
+        this.imagePipeline = imagePipeline;
+    }
+
+    ImageAnalysisPipeline getImagePipeline() {
+        ImageAnalysisPipeline pipeline = imagePipeline;
+        if (pipeline == null) {
+            synchronized (this) {
+                pipeline = imagePipeline;
+                if (pipeline == null) {
+                    pipeline = ImageAnalysisPipeline.forService(imageService,
+                            ImageAnalysisPipeline.DEFAULT_MAX_CONCURRENT, ImageAnalysisPipeline.DEFAULT_TIMEOUT);
+                    imagePipeline = pipeline;
+                }
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Asks the image service whether the image contains a cat, without changing any state.
+     */
+    boolean detectCat(BufferedImage currentCameraImage) {
+        return imageService.imageContainsCat(currentCameraImage, 50.0f);
     }
     public AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
@@ -262,11 +506,52 @@ public class SecurityService {
     public Set<Sensor> getSensors() {
         return securityRepository.getSensors();
     }
+    /**
+     * @return The sensor with the given id, or null if there is none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return securityRepository.getSensor(sensorId);
+    }
+    /**
+     * Counts the sensors, from the repository's {@link SensorStateIndex} when it keeps one.
+     */
+    public int getSensorCount() {
+        SensorStateIndex index = securityRepository.getSensorStateIndex();
+        return index != null ? index.size() : securityRepository.getSensors().size();
+    }
+    /**
+     * Counts the active sensors, from the repository's {@link SensorStateIndex} when it keeps one.
+     */
+    public int getActiveSensorCount() {
+        SensorStateIndex index = securityRepository.getSensorStateIndex();
+        if (index != null) {
+            return index.activeCount();
+        }
+        int active = 0;
+        for (Sensor sensor : securityRepository.getSensors()) {
+            if (Boolean.TRUE.equals(sensor.getActive())) {
+                active++;
+            }
+        }
+        return active;
+    }
     public void addSensor(Sensor sensor) {
-        securityRepository.addSensor(sensor);
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.ADD_SENSOR);
+        try {
+            securityRepository.addSensor(sensor);
+        } finally {
+            metrics.end(Operation.ADD_SENSOR, start);
+        }
     }
     public void removeSensor(Sensor sensor) {
-        securityRepository.removeSensor(sensor);
+        SecurityMetrics metrics = this.metrics;
+        long start = metrics.begin(Operation.REMOVE_SENSOR);
+        try {
+            securityRepository.removeSensor(sensor);
+        } finally {
+            metrics.end(Operation.REMOVE_SENSOR, start);
+        }
     }
     public ArmingStatus getArmingStatus() {
 
@@ -0,0 +1,127 @@
+package catpoint.service;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of the system state the alarm logic depends on. Each transition method returns
+ * the state that follows from an event, applying the same rules as {@link SecurityService}, so the
+ * whole state can be swapped atomically instead of being read and written one field at a time.
+ */
+public final class SecurityState {
+    private final ArmingStatus armingStatus;
+    private final AlarmStatus alarmStatus;
+    private final boolean catDetected;
+
+    public SecurityState(ArmingStatus armingStatus, AlarmStatus alarmStatus, boolean catDetected) {
+        this.armingStatus = armingStatus;
+        this.alarmStatus = alarmStatus;
+        this.catDetected = catDetected;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    public boolean isCatDetected() {
+        return catDetected;
+    }
+
+    public boolean isArmed() {
+        return armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY;
+    }
+
+    public SecurityState withAlarmStatus(AlarmStatus status) {
+        return status == alarmStatus ? this : new SecurityState(armingStatus, status, catDetected);
+    }
+
+    /**
+     * State after a sensor changes from {@code wasActive} to {@code active}. An active alarm is never
+     * changed by sensors.
+     */
+    public SecurityState afterSensorChange(boolean wasActive, boolean active) {
+        if (alarmStatus == AlarmStatus.ALARM) {
+            return this;
+        }
+        if (!wasActive && active) {
+            return afterSensorActivated();
+        } else if (wasActive && !active) {
+            return afterSensorDeactivated();
+        }
+        return this;
+    }
+
+    public SecurityState afterSensorActivated() {
+        if (armingStatus == ArmingStatus.DISARMED) {
+            return this; //no problem if the system is disarmed
+        }
+        return switch (alarmStatus) {
+            case NO_ALARM -> withAlarmStatus(AlarmStatus.PENDING_ALARM);
+            case PENDING_ALARM -> withAlarmStatus(AlarmStatus.ALARM);
+            default -> this;
+        };
+    }
+
+    public SecurityState afterSensorDeactivated() {
+        return withAlarmStatus(alarmStatus == AlarmStatus.ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+    }
+
+    /**
+     * State after the arming status is changed. Disarming clears the alarm, and arming a system
+     * that was disarmed while a cat is in view sounds it.
+     */
+    public SecurityState afterArmingChange(ArmingStatus newArmingStatus) {
+        AlarmStatus status = alarmStatus;
+        if (newArmingStatus == ArmingStatus.DISARMED) {
+            status = AlarmStatus.NO_ALARM;
+        }
+        if (armingStatus == ArmingStatus.DISARMED && catDetected) {
+            status = AlarmStatus.ALARM;
+        }
+        return new SecurityState(newArmingStatus, status, catDetected);
+    }
+
+    /**
+     * State after the camera reports whether it sees a cat.
+     * @param cat True if a cat is detected
+     * @param anySensorActive True if at least one sensor is currently active
+     * @param hasSensors False if the system has no sensors at all, in which case a missing cat changes nothing
+     */
+    public SecurityState afterCatDetected(boolean cat, boolean anySensorActive, boolean hasSensors) {
+        AlarmStatus status = alarmStatus;
+        if (cat && isArmed()) {
+            status = AlarmStatus.ALARM;
+        } else if (!cat && isArmed()) {
+            if (hasSensors) {
+                status = anySensorActive ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM;
+            }
+        } else {
+            status = AlarmStatus.NO_ALARM;
+        }
+        return new SecurityState(armingStatus, status, cat);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SecurityState that = (SecurityState) o;
+        return catDetected == that.catDetected && armingStatus == that.armingStatus && alarmStatus == that.alarmStatus;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(armingStatus, alarmStatus, catDetected);
+    }
+
+    @Override
+    public String toString() {
+        return "SecurityState{" + armingStatus + ", " + alarmStatus + ", cat=" + catDetected + '}';
+    }
+}
@@ -0,0 +1,30 @@
+package catpoint.service;
+
+import catpoint.data.Sensor;
+
+/**
+ * A request to change one sensor's activation, as applied in bulk by
+ * {@link SecurityService#applySensorEvents(java.util.Collection)}.
+ */
+public final class SensorEvent {
+    private final Sensor sensor;
+    private final boolean active;
+
+    public SensorEvent(Sensor sensor, boolean active) {
+        this.sensor = sensor;
+        this.active = active;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return sensor.getName() + (active ? " active" : " inactive");
+    }
+}
@@ -0,0 +1,237 @@
+package catpoint.service;
+
+import catpoint.application.StatusListener;
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers {@link StatusListener} callbacks asynchronously, at most once per frame interval.
+ *
+ * The bus registers itself as a single listener of the {@link SecurityService} and only remembers the
+ * latest value of each kind of update: a burst of sensor events in one frame becomes one alarm status
+ * notification carrying the final status and a single sensor update, instead of one UI refresh per event
+ * on whatever thread produced it. The sensor update is a {@code sensorsChanged} call naming every sensor
+ * reported changed during the frame, or a plain {@code sensorStatusChanged} if any change in the frame
+ * didn't say which sensors it touched. Listeners that are Swing components are called on the event
+ * dispatch thread; every other listener gets its own single-threaded executor, so a slow listener never
+ * holds up the others or the thread that changed the state.
+ */
+public class StatusNotificationBus implements StatusListener, AutoCloseable {
+
+    public static final Duration DEFAULT_FRAME_INTERVAL = Duration.ofMillis(16);
+
+    private static final Executor EVENT_DISPATCH_THREAD = SwingUtilities::invokeLater;
+
+    private final long frameNanos;
+    private final ScheduledExecutorService ticker;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicReference<AlarmStatus> pendingAlarmStatus = new AtomicReference<>();
+    private final AtomicReference<ArmingStatus> pendingArmingStatus = new AtomicReference<>();
+    private final AtomicReference<Boolean> pendingCat = new AtomicReference<>();
+    private final AtomicBoolean pendingSensorChange = new AtomicBoolean();
+    private final Set<Sensor> pendingChangedSensors = ConcurrentHashMap.newKeySet();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+
+    public StatusNotificationBus() {
+        this(DEFAULT_FRAME_INTERVAL);
+    }
+
+    /**
+     * @param frameInterval How long updates are collected before being delivered together
+     */
+    public StatusNotificationBus(Duration frameInterval) {
+        if (frameInterval.isNegative()) {
+            throw new IllegalArgumentException("frameInterval must not be negative");
+        }
+        frameNanos = frameInterval.toNanos();
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "catpoint-notification-bus"));
+    }
+
+    /**
+     * Subscribes a listener. Swing components are called on the event dispatch thread, anything else on
+     * an executor of its own.
+     */
+    public void register(StatusListener listener) {
+        if (listener instanceof Component) {
+            subscribers.add(new Subscriber(listener, EVENT_DISPATCH_THREAD, null));
+        } else {
+            ExecutorService executor = Executors.newSingleThreadExecutor(r -> daemon(r, "catpoint-listener-" + listener.getClass().getSimpleName()));
+            subscribers.add(new Subscriber(listener, executor, executor));
+        }
+    }
+
+    /**
+     * Subscribes a listener to be called on the given executor. The executor should run tasks one at a
+     * time and in order, otherwise the listener may see an older frame after a newer one.
+     */
+    public void register(StatusListener listener, Executor executor) {
+        subscribers.add(new Subscriber(listener, executor, null));
+    }
+
+    public void unregister(StatusListener listener) {
+        subscribers.removeIf(s -> {
+            if (s.listener != listener) {
+                return false;
+            }
+            if (s.ownedExecutor != null) {
+                s.ownedExecutor.shutdown();
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        pendingAlarmStatus.set(status);
+        changed();
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        pendingCat.set(catDetected);
+        changed();
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        pendingSensorChange.set(true);
+        changed();
+    }
+
+    @Override
+    public void sensorsChanged(Collection<Sensor> changed) {
+        pendingChangedSensors.addAll(changed);
+        changed();
+    }
+
+    @Override
+    public void ArmingNotify(ArmingStatus status) {
+        pendingArmingStatus.set(status);
+        changed();
+    }
+
+    /**
+     * Hands everything collected so far to the listeners' executors right away, without waiting for the
+     * end of the current frame.
+     */
+    public synchronized void flush() {
+        //cleared first, so an update arriving while we collect schedules the next frame itself
+        flushScheduled.set(false);
+        AlarmStatus alarmStatus = pendingAlarmStatus.getAndSet(null);
+        ArmingStatus armingStatus = pendingArmingStatus.getAndSet(null);
+        Boolean cat = pendingCat.getAndSet(null);
+        boolean sensorsChanged = pendingSensorChange.getAndSet(false);
+        List<Sensor> changedSensors = new ArrayList<>();
+        for (Iterator<Sensor> it = pendingChangedSensors.iterator(); it.hasNext(); ) {
+            changedSensors.add(it.next());
+            it.remove();
+        }
+        if (alarmStatus == null && armingStatus == null && cat == null && !sensorsChanged && changedSensors.isEmpty()) {
+            return;
+        }
+        frames.incrementAndGet();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.executor.execute(() -> {
+                StatusListener listener = subscriber.listener;
+                if (alarmStatus != null) {
+                    listener.notify(alarmStatus);
+                }
+                if (cat != null) {
+                    listener.catDetected(cat);
+                }
+                if (armingStatus != null) {
+                    listener.ArmingNotify(armingStatus);
+                }
+                if (sensorsChanged) {
+                    listener.sensorStatusChanged();
+                } else if (!changedSensors.isEmpty()) {
+                    listener.sensorsChanged(changedSensors);
+                }
+            });
+            delivered.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return Number of updates the bus has received
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * @return Number of per-listener deliveries made, each carrying one frame's worth of updates
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return Number of frames that had at least one update to deliver
+     */
+    public long getFrameCount() {
+        return frames.get();
+    }
+
+    /**
+     * Delivers any pending updates, then stops the ticker and the executors the bus created.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        flush();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.ownedExecutor != null) {
+                subscriber.ownedExecutor.shutdown();
+            }
+        }
+    }
+
+    private void changed() {
+        received.incrementAndGet();
+        if (flushScheduled.compareAndSet(false, true) && !ticker.isShutdown()) {
+            ticker.schedule(this::flush, frameNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static final class Subscriber {
+        private final StatusListener listener;
+        private final Executor executor;
+        private final ExecutorService ownedExecutor;
+
+        private Subscriber(StatusListener listener, Executor executor, ExecutorService ownedExecutor) {
+            this.listener = listener;
+            this.executor = executor;
+            this.ownedExecutor = ownedExecutor;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package catpoint.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors that run every task on a thread of its own, for work that spends most of its time blocked.
+ *
+ * Virtual threads are used when the runtime has them. They are looked up reflectively so the code still
+ * compiles for and runs on older runtimes, where a cached pool of named daemon threads is used instead.
+ */
+public final class TaskThreads {
+
+    private TaskThreads() {
+    }
+
+    /**
+     * @param namePrefix Name of the fallback pool's threads, numbered from 1
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, namePrefix + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return True if {@link #newThreadPerTaskExecutor(String)} hands out virtual threads on this runtime
+     */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+}
@@ -7,9 +7,13 @@ module securityModule {
     requires java.sql;
     requires miglayout;
     requires imageModule;
+    requires java.management;
+    requires jdk.httpserver;
 
 
+    //sensors and statuses have their own adapters, the journal's entry and snapshot classes are still reflective
     opens catpoint.data to com.google.gson;
+    exports catpoint.metrics to java.management;
     //requires imageModule;
 
 }
\ No newline at end of file
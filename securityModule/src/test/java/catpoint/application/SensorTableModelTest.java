@@ -0,0 +1,67 @@
+package catpoint.application;
+
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorTableModelTest {
+
+    private final SensorTableModel model = new SensorTableModel();
+    private final List<TableModelEvent> events = new ArrayList<>();
+    private final List<Sensor> sensors = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        for (String name : new String[]{"Attic", "Basement", "Cellar", "Den", "Entry"}) {
+            sensors.add(new Sensor(name, SensorType.MOTION));
+        }
+        model.setSensors(sensors);
+        model.addTableModelListener(events::add);
+    }
+
+    @Test
+    void sensorsChanged_repaintsOnlyTheirRows_oneEventPerRunOfAdjacentRows() {
+        assertTrue(model.sensorsChanged(List.of(sensors.get(4), sensors.get(0), sensors.get(1))));
+
+        assertEquals(2, events.size());
+        assertUpdated(events.get(0), 0, 1);
+        assertUpdated(events.get(1), 4, 4);
+    }
+
+    @Test
+    void sensorsChanged_withSensorNotInTable_repaintsNothing() {
+        assertFalse(model.sensorsChanged(List.of(sensors.get(2), new Sensor("Garage", SensorType.DOOR))));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void addAndRemove_keepRowsSortedAndLookupsCurrent() {
+        Sensor backDoor = new Sensor("Back Door", SensorType.DOOR);
+        model.addSensor(backDoor);
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertSame(backDoor, model.getSensorAt(1));
+
+        model.removeSensor(sensors.get(0));
+        assertEquals(TableModelEvent.DELETE, events.get(1).getType());
+        assertSame(backDoor, model.getSensorAt(0));
+
+        events.clear();
+        assertTrue(model.sensorsChanged(List.of(sensors.get(4))));
+        assertUpdated(events.get(0), 4, 4);
+        assertTrue(model.containsExactly(List.of(backDoor, sensors.get(1), sensors.get(2), sensors.get(3), sensors.get(4))));
+    }
+
+    private static void assertUpdated(TableModelEvent event, int firstRow, int lastRow) {
+        assertEquals(TableModelEvent.UPDATE, event.getType());
+        assertEquals(firstRow, event.getFirstRow());
+        assertEquals(lastRow, event.getLastRow());
+    }
+}
@@ -0,0 +1,156 @@
+package catpoint.camera;
+
+import catpoint.service.SecurityService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CameraIngestionTest {
+
+    @TempDir
+    Path directory;
+
+    private final SecurityService securityService = mock(SecurityService.class);
+
+    @Test
+    void mjpegParser_multipartStreamInOddChunks_yieldsEachFrame() throws IOException {
+        byte[] first = jpeg(Color.RED);
+        byte[] second = jpeg(Color.BLUE);
+        byte[] stream = mjpeg(first, second);
+        List<byte[]> frames = new ArrayList<>();
+        MjpegParser parser = new MjpegParser(frames::add, CameraIngestion.DEFAULT_MAX_FRAME_BYTES);
+
+        for (int offset = 0; offset < stream.length; offset += 7) {
+            parser.feed(stream, offset, Math.min(7, stream.length - offset));
+        }
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(first, frames.get(0));
+        assertArrayEquals(second, frames.get(1));
+        assertEquals(0, parser.getFramesAbandoned());
+    }
+
+    @Test
+    void mjpegParser_frameCutOff_isAbandonedForTheNextOne() throws IOException {
+        byte[] first = jpeg(Color.RED);
+        byte[] second = jpeg(Color.BLUE);
+        List<byte[]> frames = new ArrayList<>();
+        MjpegParser parser = new MjpegParser(frames::add, CameraIngestion.DEFAULT_MAX_FRAME_BYTES);
+
+        //a new start-of-image marker in the middle of a frame's scan data
+        parser.feed(first, 0, first.length - 10);
+        parser.feed(second, 0, second.length);
+        //the rest of a frame after a reconnect
+        parser.feed(first, 0, first.length / 2);
+        parser.reset();
+        parser.feed(first, first.length / 2, first.length - first.length / 2);
+        parser.feed(first, 0, first.length);
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(second, frames.get(0));
+        assertArrayEquals(first, frames.get(1));
+        assertEquals(2, parser.getFramesAbandoned());
+    }
+
+    @Test
+    void mjpegFile_fasterThanDetection_keepsOnlyLatestFrame() throws Exception {
+        byte[][] frames = new byte[50][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = jpeg(new Color(i * 5, 0, 0));
+        }
+        Path file = Files.write(directory.resolve("camera.mjpeg"), mjpeg(frames));
+
+        try (CameraIngestion ingestion = new CameraIngestion(securityService, Duration.ofMillis(100))) {
+            Camera camera = ingestion.addMjpegFile("porch", file);
+            await(() -> camera.getFramesReceived() == 50
+                    && camera.getFramesProcessed() + camera.getFramesDropped() == 50);
+
+            assertTrue(camera.getFramesDropped() > 40, "dropped " + camera.getFramesDropped());
+            verify(securityService, times((int) camera.getFramesProcessed())).processImage(any(BufferedImage.class));
+        }
+    }
+
+    @Test
+    void frameDirectory_newImageFile_isProcessed() throws Exception {
+        Path frames = Files.createDirectory(directory.resolve("frames"));
+        try (CameraIngestion ingestion = new CameraIngestion(securityService, Duration.ZERO)) {
+            Camera camera = ingestion.addFrameDirectory("garage", frames);
+            Files.write(frames.resolve("ignored.txt"), "not a frame".getBytes(StandardCharsets.UTF_8));
+            Path written = frames.resolve("frame.tmp");
+            Files.write(written, jpeg(Color.GREEN));
+            Files.move(written, frames.resolve("frame-0001.jpg"));
+
+            await(() -> camera.getFramesProcessed() == 1);
+            verify(securityService).processImage(any(BufferedImage.class));
+            assertEquals(0, camera.getDecodeFailures());
+        }
+    }
+
+    @Test
+    void frameDirectory_fileStillBeingWritten_isOnlyProcessedOnceComplete() throws Exception {
+        Path frames = Files.createDirectory(directory.resolve("frames"));
+        byte[] frame = jpeg(Color.ORANGE);
+        int half = frame.length / 2;
+        assertFalse(CameraIngestion.isComplete(Arrays.copyOf(frame, half)));
+        try (CameraIngestion ingestion = new CameraIngestion(securityService, Duration.ZERO)) {
+            Camera camera = ingestion.addFrameDirectory("shed", frames);
+            Path file = frames.resolve("frame-0001.jpg");
+            Files.write(file, Arrays.copyOf(frame, half));
+            Thread.sleep(200);
+            assertEquals(0, camera.getFramesReceived());
+
+            Files.write(file, Arrays.copyOfRange(frame, half, frame.length), StandardOpenOption.APPEND);
+            await(() -> camera.getFramesProcessed() >= 1);
+            assertEquals(0, camera.getDecodeFailures());
+        }
+    }
+
+    private static byte[] jpeg(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 32, 24);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] mjpeg(byte[]... frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(("--frame\r\nContent-Type: image/jpeg\r\nContent-Length: " + frame.length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.write(frame);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return out.toByteArray();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,50 @@
+package catpoint.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatpointGsonTest {
+
+    @Test
+    void sensorsToJson_roundTrip_keepsEverySensorWithCompactIds() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        door.setActive(true);
+        Sensor window = new Sensor("Kitchen Window", SensorType.WINDOW);
+
+        String json = CatpointGson.sensorsToJson(List.of(door, window));
+        assertTrue(json.contains("\"sensorId\":\"" + CatpointGson.compactUuid(door.getSensorId()) + "\""));
+        assertTrue(json.length() < new Gson().toJson(List.of(door, window)).length());
+
+        Set<Sensor> read = CatpointGson.sensorsFromJson(json);
+        Sensor readDoor = read.iterator().next();
+        assertEquals(door.getSensorId(), readDoor.getSensorId());
+        assertEquals("Front Door", readDoor.getName());
+        assertEquals(SensorType.DOOR, readDoor.getSensorType());
+        assertTrue(readDoor.getActive());
+        assertTrue(read.contains(window));
+    }
+
+    @Test
+    void sensorsFromJson_reflectiveEncoding_isStillRead() {
+        Sensor garage = new Sensor("Garage", SensorType.MOTION);
+        String legacy = new Gson().toJson(List.of(garage)).replace("}", ",\"battery\":{\"level\":80},\"note\":null}");
+
+        Sensor read = CatpointGson.sensorsFromJson(legacy).iterator().next();
+        assertEquals(garage.getSensorId(), read.getSensorId());
+        assertEquals(SensorType.MOTION, read.getSensorType());
+        assertFalse(read.getActive());
+    }
+
+    @Test
+    void statusAdapters_writeNamesAndRejectUnknownConstants() {
+        assertEquals("\"PENDING_ALARM\"", CatpointGson.GSON.toJson(AlarmStatus.PENDING_ALARM));
+        assertEquals(ArmingStatus.ARMED_HOME, CatpointGson.GSON.fromJson("\"ARMED_HOME\"", ArmingStatus.class));
+        assertThrows(JsonParseException.class, () -> CatpointGson.GSON.fromJson("\"ARMED_AT_WORK\"", ArmingStatus.class));
+    }
+}
@@ -0,0 +1,73 @@
+package catpoint.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_afterSensorAndStatusChanges_replaysJournal() {
+        Sensor frontDoor = new Sensor("Front Door", SensorType.DOOR);
+        Sensor backWindow = new Sensor("Back Window", SensorType.WINDOW);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(frontDoor);
+            repository.addSensor(backWindow);
+            frontDoor.setActive(true);
+            repository.updateSensor(frontDoor);
+            repository.removeSensor(backWindow);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+            Sensor restored = reopened.getSensors().iterator().next();
+            assertEquals(frontDoor.getSensorId(), restored.getSensorId());
+            assertTrue(restored.getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void compaction_journalExceedsThreshold_stateSurvivesInSnapshot() throws IOException {
+        Sensor motion = new Sensor("Hallway", SensorType.MOTION);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 1, 5)) {
+            repository.addSensor(motion);
+            for (int i = 0; i < 12; i++) {
+                motion.setActive(i % 2 == 0);
+                repository.updateSensor(motion);
+            }
+        }
+        assertTrue(Files.exists(directory.resolve("catpoint-snapshot.json")));
+        assertTrue(Files.readAllLines(directory.resolve("catpoint-journal.log")).size() < 5);
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+            assertFalse(reopened.getSensors().iterator().next().getActive());
+        }
+    }
+
+    @Test
+    void replay_tornTrailingEntry_isDiscarded() throws IOException {
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(new Sensor("Garage", SensorType.DOOR));
+        }
+        Files.writeString(directory.resolve("catpoint-journal.log"), "{\"type\":\"SENSOR_UP", StandardOpenOption.APPEND);
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+        }
+        assertEquals(1, Files.readAllLines(directory.resolve("catpoint-journal.log")).size());
+    }
+}
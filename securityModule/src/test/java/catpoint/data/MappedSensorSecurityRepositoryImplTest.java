@@ -0,0 +1,82 @@
+package catpoint.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedSensorSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_afterChanges_restoresSensorsAndStatus() {
+        Path file = directory.resolve("sensors.bin");
+        Sensor frontDoor = new Sensor("Front Door", SensorType.DOOR);
+        Sensor hallway = new Sensor("Hallway", SensorType.MOTION);
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(file)) {
+            repository.addSensor(frontDoor);
+            repository.addSensor(hallway);
+            hallway.setActive(true);
+            repository.updateSensor(hallway);
+            repository.removeSensor(frontDoor);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+
+        try (MappedSensorSecurityRepositoryImpl reopened = new MappedSensorSecurityRepositoryImpl(file)) {
+            assertEquals(1, reopened.getSensors().size());
+            Sensor restored = reopened.getSensors().iterator().next();
+            assertEquals(hallway.getSensorId(), restored.getSensorId());
+            assertEquals("Hallway", restored.getName());
+            assertEquals(SensorType.MOTION, restored.getSensorType());
+            assertTrue(restored.getActive());
+            assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+            assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void addSensor_beyondInitialCapacity_growsAndReusesFreedSlots() {
+        Path file = directory.resolve("sensors.bin");
+        List<Sensor> added = new ArrayList<>();
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(file)) {
+            for (int i = 0; i < 200; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.WINDOW);
+                repository.addSensor(sensor);
+                added.add(sensor);
+            }
+            repository.removeSensor(added.get(10));
+            repository.addSensor(new Sensor("Replacement", SensorType.DOOR));
+        }
+
+        try (MappedSensorSecurityRepositoryImpl reopened = new MappedSensorSecurityRepositoryImpl(file)) {
+            assertEquals(200, reopened.getSensors().size());
+            assertFalse(reopened.getSensors().contains(added.get(10)));
+        }
+    }
+
+    @Test
+    void updateSensor_renamed_rewritesRecord() {
+        Path file = directory.resolve("sensors.bin");
+        Sensor sensor = new Sensor("Back Window", SensorType.WINDOW);
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(file)) {
+            repository.addSensor(sensor);
+            Sensor renamed = new Sensor();
+            renamed.setSensorId(sensor.getSensorId());
+            renamed.setName("Kitchen Window");
+            renamed.setSensorType(SensorType.WINDOW);
+            renamed.setActive(false);
+            repository.updateSensor(renamed);
+        }
+
+        try (MappedSensorSecurityRepositoryImpl reopened = new MappedSensorSecurityRepositoryImpl(file)) {
+            assertEquals("Kitchen Window", reopened.getSensors().iterator().next().getName());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package catpoint.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    //surefire points java.util.prefs.userRoot into target, so this never touches real preferences
+    private final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+
+    @BeforeEach
+    void init() throws BackingStoreException {
+        prefs.clear();
+    }
+
+    @Test
+    void writeThrough_change_isPersistedImmediately() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.addSensor(new Sensor("Front Door", SensorType.DOOR));
+
+        assertEquals("ARMED_AWAY", prefs.get("ARMING_STATUS", null));
+        assertFalse(repository.isDirty());
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl();
+        assertEquals(ArmingStatus.ARMED_AWAY, reloaded.getArmingStatus());
+        assertEquals(1, reloaded.getSensors().size());
+    }
+
+    @Test
+    void writeBehind_burstOfTransitions_writesOnlyLatestStateOnFlush() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                PretendDatabaseSecurityRepositoryImpl.WriteMode.WRITE_BEHIND, Duration.ofHours(1));
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.setAlarmStatus(AlarmStatus.NO_ALARM);
+
+        assertNull(prefs.get("ALARM_STATUS", null));
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertTrue(repository.isDirty());
+
+        repository.close();
+        assertEquals("NO_ALARM", prefs.get("ALARM_STATUS", null));
+        assertFalse(repository.isDirty());
+
+        //closed repositories write through instead of leaving changes dirty with no flush to come
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        assertEquals("ALARM", prefs.get("ALARM_STATUS", null));
+        assertFalse(repository.isDirty());
+    }
+
+    @Test
+    void writeBehind_afterFlushInterval_writesInBackground() throws InterruptedException {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                PretendDatabaseSecurityRepositoryImpl.WriteMode.WRITE_BEHIND, Duration.ofMillis(20));
+        repository.addSensor(new Sensor("Back Door", SensorType.DOOR));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (prefs.get("SENSORS", null) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(prefs.get("SENSORS", null));
+        repository.close();
+    }
+
+    @Test
+    void backgroundLoad_statusIsAvailableBeforeSensorsAreParsed() {
+        PretendDatabaseSecurityRepositoryImpl writer = new PretendDatabaseSecurityRepositoryImpl();
+        writer.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        door.setActive(true);
+        writer.addSensors(List.of(door, new Sensor("Attic", SensorType.MOTION)));
+
+        List<Runnable> pending = new ArrayList<>();
+        Executor heldLoader = pending::add;
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                PretendDatabaseSecurityRepositoryImpl.WriteMode.WRITE_THROUGH, Duration.ofSeconds(1), heldLoader);
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertFalse(repository.whenSensorsLoaded().toCompletableFuture().isDone());
+
+        pending.forEach(Runnable::run);
+        assertTrue(repository.whenSensorsLoaded().toCompletableFuture().isDone());
+        assertEquals("Attic", repository.getSensors().iterator().next().getName());
+        assertTrue(repository.getSensors().contains(door));
+        assertEquals(1, repository.getSensorStateIndex().activeCount(SensorType.DOOR));
+    }
+}
@@ -0,0 +1,77 @@
+package catpoint.data;
+
+import catpoint.service.SecurityService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.ImageServiceInterface;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class SensorStateIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void update_activationAndTypeChanges_keepsCountsInStep() {
+        SensorStateIndex index = new SensorStateIndex();
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Kitchen Window", SensorType.WINDOW);
+        index.add(door);
+        index.add(window);
+        assertFalse(index.anyActive());
+
+        door.setActive(true);
+        index.update(door);
+        window.setActive(true);
+        index.update(window);
+        assertEquals(2, index.activeCount());
+        assertEquals(1, index.activeCount(SensorType.DOOR));
+
+        door.setSensorType(SensorType.MOTION);
+        index.update(door);
+        assertEquals(0, index.activeCount(SensorType.DOOR));
+        assertEquals(1, index.activeCount(SensorType.MOTION));
+
+        index.remove(window);
+        assertEquals(1, index.activeCount());
+        assertEquals(0, index.activeCount(SensorType.WINDOW));
+        assertFalse(index.isActive(window));
+    }
+
+    @Test
+    void add_beyondInitialCapacity_reusesFreedSlots() {
+        SensorStateIndex index = new SensorStateIndex();
+        Sensor[] sensors = new Sensor[200];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = new Sensor("Sensor " + i, SensorType.MOTION);
+            sensors[i].setActive(i % 2 == 0);
+            index.add(sensors[i]);
+        }
+        assertEquals(100, index.activeCount());
+
+        int freed = index.slotOf(sensors[150]);
+        index.remove(sensors[150]);
+        assertEquals(freed, index.add(new Sensor("Replacement", SensorType.DOOR)));
+        assertEquals(99, index.activeCount());
+        assertEquals(200, index.size());
+    }
+
+    @Test
+    void repository_sensorChangesThroughService_areReflectedInIndex() {
+        JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory);
+        SecurityService securityService = new SecurityService(repository, mock(ImageServiceInterface.class));
+        Sensor sensor = new Sensor("Back Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+
+        securityService.changeSensorActivationStatus(sensor, true);
+        assertTrue(repository.getSensorStateIndex().anyActive());
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertFalse(repository.getSensorStateIndex().anyActive());
+        repository.close();
+    }
+}
@@ -0,0 +1,129 @@
+package catpoint.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedSecurityRepositoryImplTest {
+
+    private final ShardedSecurityRepositoryImpl repository = new ShardedSecurityRepositoryImpl(16);
+
+    @Test
+    void addSensors_largeFleet_isSpreadOverAllShards() {
+        repository.addSensors(sensors(100_000));
+
+        assertEquals(100_000, repository.getSensorCount());
+        assertEquals(100_000, repository.getSensors().size());
+        for (int shardSize : repository.getShardSizes()) {
+            //an even spread would be 6250 per shard
+            assertTrue(shardSize > 5000 && shardSize < 7500, "uneven shard of " + shardSize);
+        }
+    }
+
+    @Test
+    void updateSensor_activationOnly_keepsDisplayView() {
+        List<Sensor> sensors = sensors(10);
+        repository.addSensors(sensors);
+        Set<Sensor> view = repository.getSensors();
+
+        sensors.get(3).setActive(true);
+        repository.updateSensor(sensors.get(3));
+        assertSame(view, repository.getSensors());
+        assertEquals(1, repository.getSensorStateIndex().activeCount());
+
+        sensors.get(3).setName("A renamed sensor");
+        repository.updateSensor(sensors.get(3));
+        Set<Sensor> resorted = repository.getSensors();
+        assertNotSame(view, resorted);
+        assertEquals("A renamed sensor", resorted.iterator().next().getName());
+    }
+
+    @Test
+    void updateSensors_fromManyThreads_leavesIndexConsistent() throws InterruptedException {
+        List<Sensor> sensors = sensors(4000);
+        repository.addSensors(sensors);
+
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            List<Sensor> batch = sensors.subList(t * 1000, (t + 1) * 1000);
+            writers.execute(() -> {
+                batch.forEach(s -> s.setActive(true));
+                repository.updateSensors(batch);
+            });
+        }
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(4000, repository.getSensorStateIndex().activeCount());
+        assertSame(sensors.get(42), repository.getSensor(sensors.get(42).getSensorId()));
+    }
+
+    @Test
+    void getSensors_readWhileSensorsAreAddedAndRemoved_endsWithCurrentView() throws InterruptedException {
+        List<Sensor> sensors = sensors(2000);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(3);
+        for (int t = 0; t < 3; t++) {
+            readers.execute(() -> {
+                while (writing.get()) {
+                    repository.getSensors();
+                }
+            });
+        }
+        for (Sensor sensor : sensors) {
+            repository.addSensor(sensor);
+        }
+        for (Sensor sensor : sensors.subList(0, 500)) {
+            repository.removeSensor(sensor);
+        }
+        writing.set(false);
+        readers.shutdown();
+        assertTrue(readers.awaitTermination(10, TimeUnit.SECONDS));
+
+        Set<Sensor> view = repository.getSensors();
+        assertEquals(1500, view.size());
+        assertFalse(view.contains(sensors.get(0)));
+        assertTrue(view.contains(sensors.get(1999)));
+    }
+
+    @Test
+    void updateSensor_racingWithRemoveSensor_neverPutsTheSensorBack() throws InterruptedException {
+        List<Sensor> sensors = sensors(2000);
+        repository.addSensors(sensors);
+        ExecutorService updater = Executors.newSingleThreadExecutor();
+        updater.execute(() -> {
+            for (int round = 0; round < 5; round++) {
+                for (Sensor sensor : sensors) {
+                    sensor.setActive(round % 2 == 0);
+                    repository.updateSensor(sensor);
+                }
+            }
+        });
+        for (Sensor sensor : sensors) {
+            repository.removeSensor(sensor);
+        }
+        updater.shutdown();
+        assertTrue(updater.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, repository.getSensorCount());
+        assertEquals(0, repository.getSensorStateIndex().size());
+        assertTrue(repository.getSensors().isEmpty());
+    }
+
+    private static List<Sensor> sensors(int count) {
+        List<Sensor> sensors = new ArrayList<>(count);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        return sensors;
+    }
+}
@@ -0,0 +1,103 @@
+package catpoint.gateway;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.service.ConcurrentSecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.ImageServiceInterface;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class TelemetryGatewayTest {
+
+    private final ShardedSecurityRepositoryImpl repository = new ShardedSecurityRepositoryImpl();
+    private final ConcurrentSecurityService securityService = new ConcurrentSecurityService(repository, mock(ImageServiceInterface.class));
+    private final Sensor door = new Sensor("Front Door", SensorType.DOOR);
+    private TelemetryGateway gateway;
+
+    @BeforeEach
+    void init() {
+        securityService.addSensor(door);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        gateway = new TelemetryGateway(securityService, loopback, loopback);
+        gateway.start();
+    }
+
+    @AfterEach
+    void close() {
+        gateway.close();
+    }
+
+    @Test
+    void tcp_frameSplitAcrossWrites_isAppliedOnce() throws Exception {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        ByteBuffer frame = ByteBuffer.allocate(SensorEventProtocol.SENSOR_EVENT_FRAME_BYTES);
+        SensorEventProtocol.writeSensorEvent(frame, door.getSensorId(), true, 1000);
+        frame.flip();
+
+        try (SocketChannel client = SocketChannel.open(gateway.getTcpAddress())) {
+            client.write(frame.slice().limit(11));
+            Thread.sleep(50);
+            client.write(frame.position(11));
+            awaitCount(gateway::getEventsApplied, 1);
+        }
+        assertTrue(door.getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void udp_datagramWithSeveralFrames_dropsStaleEvents() throws Exception {
+        ByteBuffer datagram = ByteBuffer.allocate(3 * SensorEventProtocol.SENSOR_EVENT_FRAME_BYTES);
+        SensorEventProtocol.writeSensorEvent(datagram, door.getSensorId(), true, 2000);
+        SensorEventProtocol.writeSensorEvent(datagram, door.getSensorId(), false, 1000);
+        SensorEventProtocol.writeSensorEvent(datagram, door.getSensorId(), false, 3000);
+        datagram.flip();
+
+        try (DatagramChannel client = DatagramChannel.open()) {
+            client.send(datagram, gateway.getUdpAddress());
+            awaitCount(() -> gateway.getEventsApplied() + gateway.getStaleEvents(), 3);
+        }
+        assertEquals(2, gateway.getEventsApplied());
+        assertEquals(1, gateway.getStaleEvents());
+        assertFalse(door.getActive());
+    }
+
+    @Test
+    void tcp_unknownSensorAndCorruptLength_areCountedAndConnectionIsDropped() throws Exception {
+        ByteBuffer frames = ByteBuffer.allocate(SensorEventProtocol.SENSOR_EVENT_FRAME_BYTES + 2);
+        SensorEventProtocol.writeSensorEvent(frames, UUID.randomUUID(), true, 1000);
+        frames.putShort((short) 0xFFFF).flip();
+
+        try (SocketChannel client = SocketChannel.open(gateway.getTcpAddress())) {
+            client.write(frames);
+            awaitCount(gateway::getMalformedFrames, 1);
+            assertEquals(-1, client.read(ByteBuffer.allocate(1)));
+        }
+        assertEquals(1, gateway.getUnknownSensorEvents());
+        assertEquals(0, gateway.getEventsApplied());
+        assertFalse(door.getActive());
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
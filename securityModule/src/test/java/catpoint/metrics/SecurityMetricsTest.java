@@ -0,0 +1,89 @@
+package catpoint.metrics;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.ImageServiceInterface;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class SecurityMetricsTest {
+
+    private final SecurityMetrics metrics = new SecurityMetrics();
+    private SecurityService securityService;
+    private final Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+
+    @BeforeEach
+    void init() {
+        securityService = new SecurityService(new MeteredSecurityRepository(new ShardedSecurityRepositoryImpl(), metrics),
+                MeteredImageService.wrap(mock(ImageServiceInterface.class), metrics));
+        securityService.setMetrics(metrics);
+        securityService.addSensor(sensor);
+    }
+
+    @AfterEach
+    void close() {
+        metrics.unregisterMBeans();
+    }
+
+    @Test
+    void sensorActivation_whileArmed_isTimedAndLoggedWithItsCause() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(sensor, true);
+
+        assertEquals(1, metrics.getCount(Operation.CHANGE_SENSOR_ACTIVATION));
+        assertEquals(1, metrics.getCount(Operation.SET_ARMING_STATUS));
+        assertTrue(metrics.getCount(Operation.REPOSITORY_WRITE) >= 3);
+        assertTrue(metrics.getCount(Operation.LISTENER_FANOUT) >= 2);
+
+        List<StateTransition> transitions = metrics.getRecentTransitions();
+        assertEquals(2, transitions.size());
+        assertEquals(ArmingStatus.ARMED_HOME, transitions.get(0).getTo());
+        assertEquals(Operation.SET_ARMING_STATUS, transitions.get(0).getCause());
+        assertEquals(AlarmStatus.PENDING_ALARM, transitions.get(1).getTo());
+        assertEquals(Operation.CHANGE_SENSOR_ACTIVATION, transitions.get(1).getCause());
+    }
+
+    @Test
+    void registerMBeans_exposesOperationCountsOverJmx() throws Exception {
+        metrics.registerMBeans();
+        securityService.processImage(null);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(1L, server.getAttribute(new ObjectName("catpoint:type=Operation,name=PROCESS_IMAGE"), "Count"));
+        assertEquals(1L, server.getAttribute(new ObjectName("catpoint:type=Operation,name=IMAGE_DETECTION"), "Count"));
+    }
+
+    @Test
+    void disabledMetrics_recordNothing_andExporterReportsOnlyNewTransitions() {
+        securityService.setMetrics(SecurityMetrics.DISABLED);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertEquals(0, SecurityMetrics.DISABLED.getCount(Operation.SET_ARMING_STATUS));
+        assertEquals(0, SecurityMetrics.DISABLED.getTransitionCount());
+
+        securityService.setMetrics(metrics);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStreamMetricsExporter exporter = new PrintStreamMetricsExporter(new PrintStream(out, true));
+        exporter.export(metrics.snapshot());
+        exporter.export(metrics.snapshot());
+
+        String report = out.toString();
+        assertEquals(1, report.split("ARMED_AWAY -> DISARMED", -1).length - 1);
+        assertTrue(report.contains("SET_ARMING_STATUS count=1"));
+    }
+}
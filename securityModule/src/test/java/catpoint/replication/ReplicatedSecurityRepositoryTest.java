@@ -0,0 +1,269 @@
+package catpoint.replication;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicatedSecurityRepositoryTest {
+
+    private static final Duration ELECTION_TIMEOUT = Duration.ofMillis(150);
+
+    private final List<ReplicatedSecurityRepository> nodes = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        nodes.forEach(ReplicatedSecurityRepository::close);
+    }
+
+    @Test
+    void follower_appliesLeaderChangesInOrder_andRefusesWrites() throws Exception {
+        List<InetSocketAddress> members = freeAddresses(2);
+        ReplicatedSecurityRepository leader = startNode(members, 0, 1024);
+        ReplicatedSecurityRepository follower = startNode(members, 1, 1024);
+        await(leader::isLeader);
+
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        leader.addSensor(door);
+        leader.addSensor(window);
+        door.setActive(true);
+        leader.updateSensor(door);
+        leader.removeSensor(window);
+        leader.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        leader.setAlarmStatus(AlarmStatus.ALARM);
+        leader.setCatStatus(true);
+
+        await(() -> follower.getAppliedSeq() == leader.getAppliedSeq());
+        assertEquals(1, follower.getSensors().size());
+        Sensor replica = follower.getSensors().iterator().next();
+        assertEquals(door.getSensorId(), replica.getSensorId());
+        assertTrue(replica.getActive());
+        assertEquals(ArmingStatus.ARMED_AWAY, follower.getArmingStatus());
+        assertEquals(AlarmStatus.ALARM, follower.getAlarmStatus());
+        assertTrue(follower.getCatStatus());
+        assertThrows(IllegalStateException.class, () -> follower.setAlarmStatus(AlarmStatus.NO_ALARM));
+        await(() -> leader.getMaxFollowerLag() == 0);
+        assertTrue(leader.getReplicationLag().getTotalCount() > 0);
+    }
+
+    @Test
+    void lateFollower_pastLogCapacity_catchesUpFromSnapshot() throws Exception {
+        List<InetSocketAddress> members = freeAddresses(2);
+        ReplicatedSecurityRepository leader = startNode(members, 0, 16);
+        await(leader::isLeader);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            sensors.add(sensor);
+            leader.addSensor(sensor);
+        }
+        for (Sensor sensor : sensors) {
+            sensor.setActive(true);
+            leader.updateSensor(sensor);
+        }
+
+        ReplicatedSecurityRepository follower = startNode(members, 1, 16);
+        await(() -> follower.getAppliedSeq() == leader.getAppliedSeq());
+        assertEquals(1, leader.getSnapshotsSent());
+        assertEquals(20, follower.getSensors().size());
+        assertTrue(follower.getSensors().stream().allMatch(Sensor::getActive));
+
+        sensors.get(0).setActive(false);
+        leader.updateSensor(sensors.get(0));
+        await(() -> follower.getAppliedSeq() == leader.getAppliedSeq());
+        assertEquals(19, follower.getSensorStateIndex().activeCount());
+        assertEquals(1, leader.getSnapshotsSent());
+    }
+
+    @Test
+    void leaderDies_lowestRankedFollowerIsPromoted_andOtherFollowsIt() throws Exception {
+        List<InetSocketAddress> members = freeAddresses(3);
+        ReplicatedSecurityRepository leader = startNode(members, 0, 1024);
+        ReplicatedSecurityRepository first = startNode(members, 1, 1024);
+        ReplicatedSecurityRepository second = startNode(members, 2, 1024);
+        await(leader::isLeader);
+        Sensor garage = new Sensor("Garage", SensorType.DOOR);
+        leader.addSensor(garage);
+        leader.setArmingStatus(ArmingStatus.ARMED_HOME);
+        await(() -> first.getAppliedSeq() == 2 && second.getAppliedSeq() == 2);
+
+        leader.close();
+        await(first::isLeader);
+        assertFalse(second.isLeader());
+        assertTrue(first.getTerm() > 1);
+        assertEquals(ArmingStatus.ARMED_HOME, first.getArmingStatus());
+
+        Sensor promotedGarage = first.getSensors().iterator().next();
+        promotedGarage.setActive(true);
+        first.updateSensor(promotedGarage);
+        await(() -> members.get(1).equals(second.getLeaderAddress()) && second.getAppliedSeq() == first.getAppliedSeq());
+        assertTrue(second.getSensors().iterator().next().getActive());
+        assertEquals(first.getTerm(), ReplicationProtocol.probe(members.get(1), 1000));
+    }
+
+    @Test
+    void leaderCutOffDuringPromotion_stepsDownOnceReachable_leavingOneLeader() throws Exception {
+        List<InetSocketAddress> members = freeAddresses(3);
+        try (Blackhole toOldLeader = new Blackhole(members.get(0))) {
+            //the others reach the first node through a link that can be cut, it reaches them directly
+            List<InetSocketAddress> viaLink = new ArrayList<>(members);
+            viaLink.set(0, toOldLeader.getAddress());
+            ReplicatedSecurityRepository oldLeader = startNode(members, 0, 1024);
+            ReplicatedSecurityRepository first = startNode(viaLink, 1, 1024);
+            ReplicatedSecurityRepository second = startNode(viaLink, 2, 1024);
+            await(() -> oldLeader.isLeader() && oldLeader.getFollowerCount() == 2);
+
+            toOldLeader.cut();
+            await(first::isLeader);
+            toOldLeader.restore();
+
+            await(() -> !oldLeader.isLeader() && members.get(1).equals(oldLeader.getLeaderAddress()));
+            assertFalse(second.isLeader());
+            assertEquals(first.getTerm(), oldLeader.getTerm());
+            first.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            await(() -> oldLeader.getArmingStatus() == ArmingStatus.ARMED_AWAY
+                    && second.getArmingStatus() == ArmingStatus.ARMED_AWAY);
+            assertEquals(1, nodes.stream().filter(ReplicatedSecurityRepository::isLeader).count());
+        }
+    }
+
+    private ReplicatedSecurityRepository startNode(List<InetSocketAddress> members, int rank, int logCapacity) {
+        ReplicatedSecurityRepository node = new ReplicatedSecurityRepository(new ShardedSecurityRepositoryImpl(), members, rank,
+                ELECTION_TIMEOUT, logCapacity);
+        nodes.add(node);
+        node.start();
+        return node;
+    }
+
+    private static List<InetSocketAddress> freeAddresses(int count) throws IOException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                sockets.add(socket);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort()));
+            }
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Forwards connections to a node until cut, then drops them and every new one until restored.
+     */
+    private static final class Blackhole implements AutoCloseable {
+        private final InetSocketAddress target;
+        private final ServerSocket server;
+        private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+        private volatile boolean cut;
+
+        Blackhole(InetSocketAddress target) throws IOException {
+            this.target = target;
+            server = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+            daemon(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        forward(server.accept());
+                    } catch (IOException e) {
+                        //closed
+                    }
+                }
+            });
+        }
+
+        InetSocketAddress getAddress() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        }
+
+        void cut() {
+            cut = true;
+            sockets.forEach(Blackhole::closeQuietly);
+        }
+
+        void restore() {
+            cut = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            cut();
+        }
+
+        private void forward(Socket client) {
+            if (cut) {
+                closeQuietly(client);
+                return;
+            }
+            Socket upstream = new Socket();
+            try {
+                upstream.connect(target, 1000);
+            } catch (IOException e) {
+                closeQuietly(client);
+                closeQuietly(upstream);
+                return;
+            }
+            sockets.add(client);
+            sockets.add(upstream);
+            daemon(() -> pump(client, upstream));
+            daemon(() -> pump(upstream, client));
+        }
+
+        private void pump(Socket from, Socket to) {
+            try {
+                from.getInputStream().transferTo(to.getOutputStream());
+            } catch (IOException e) {
+                //one side went away
+            } finally {
+                closeQuietly(from);
+                closeQuietly(to);
+                sockets.remove(from);
+                sockets.remove(to);
+            }
+        }
+
+        private static void daemon(Runnable task) {
+            Thread thread = new Thread(task, "blackhole");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //closing anyway
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
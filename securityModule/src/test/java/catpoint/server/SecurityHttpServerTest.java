@@ -0,0 +1,175 @@
+package catpoint.server;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.Sensor;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import catpoint.service.ConcurrentSecurityService;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.ImageServiceInterface;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SecurityHttpServerTest {
+
+    private final ShardedSecurityRepositoryImpl repository = new ShardedSecurityRepositoryImpl();
+    private final ImageServiceInterface imageService = mock(ImageServiceInterface.class);
+    private SecurityHttpServer server;
+
+    @BeforeEach
+    void init() {
+        server = new SecurityHttpServer(new ConcurrentSecurityService(repository, imageService),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+    }
+
+    @AfterEach
+    void close() {
+        server.close();
+    }
+
+    @Test
+    void sensorLifecycle_addToggleRemove_isReflectedInStatus() throws IOException {
+        Response created = send("POST", "/sensors", "{\"name\":\"Front Door\",\"sensorType\":\"DOOR\"}");
+        assertEquals(201, created.status);
+        String id = created.json().get("sensorId").getAsString();
+
+        send("PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}");
+        Response toggled = send("PUT", "/sensors/" + id + "/active", "{\"active\":true}");
+        assertEquals(200, toggled.status);
+        assertTrue(toggled.json().get("active").getAsBoolean());
+
+        JsonObject status = send("GET", "/status", (String) null).json();
+        assertEquals("PENDING_ALARM", status.get("alarmStatus").getAsString());
+        assertEquals(1, status.get("activeSensorCount").getAsInt());
+
+        Sensor sensor = repository.getSensors().iterator().next();
+        assertEquals(204, send("DELETE", "/sensors/" + sensor.getSensorId(), (String) null).status);
+        assertTrue(repository.getSensors().isEmpty());
+    }
+
+    @Test
+    void postImage_withCat_soundsAlarmWhenArmedHome() throws IOException {
+        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(true);
+        send("PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}");
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", png);
+        Response response = send("POST", "/images", png.toByteArray());
+
+        assertEquals(200, response.status);
+        assertEquals(AlarmStatus.ALARM.name(), response.json().get("alarmStatus").getAsString());
+        assertEquals(ArmingStatus.ARMED_HOME.name(), response.json().get("armingStatus").getAsString());
+    }
+
+    @Test
+    void badRequests_getErrorStatusesAndLeaveStateAlone() throws IOException, InterruptedException {
+        assertEquals(400, send("PUT", "/arming", "{\"armingStatus\":\"ARMED_AT_WORK\"}").status);
+        assertEquals(400, send("POST", "/sensors", "not json").status);
+        assertEquals(404, send("PUT", "/sensors/AAAAAAAAAAAAAAAAAAAAAA/active", "{\"active\":true}").status);
+        assertEquals(405, send("DELETE", "/status", (String) null).status);
+        assertEquals(415, send("POST", "/images", "not an image").status);
+
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+        //latency is recorded once the exchange is closed, which can be just after the client has its answer
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getRequestLatency().getTotalCount() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, server.getRequestLatency().getTotalCount());
+    }
+
+    @Test
+    void failureInService_gets500WithoutItsDetails() throws IOException {
+        when(imageService.imageContainsCat(any(), anyFloat())).thenThrow(new IllegalStateException("detector key expired"));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        Response response = send("POST", "/images", png.toByteArray());
+        assertEquals(500, response.status);
+        assertEquals("Internal server error", response.json().get("error").getAsString());
+    }
+
+    @Test
+    void failureAfterResponseStarted_isNotAnsweredAgain() throws IOException {
+        HttpExchange exchange = mock(HttpExchange.class);
+        when(exchange.getRequestMethod()).thenReturn("GET");
+        when(exchange.getRequestURI()).thenReturn(URI.create("/status"));
+        doAnswer(invocation -> when(exchange.getResponseCode()).thenReturn(invocation.getArgument(0)))
+                .when(exchange).sendResponseHeaders(anyInt(), anyLong());
+        when(exchange.getResponseCode()).thenReturn(-1);
+
+        server.timed(e -> {
+            e.sendResponseHeaders(200, -1);
+            throw new IllegalStateException("failed while writing");
+        }).handle(exchange);
+
+        verify(exchange).sendResponseHeaders(200, -1);
+        verify(exchange, never()).sendResponseHeaders(eq(500), anyLong());
+        verify(exchange).close();
+        assertEquals(1, server.getRequestLatency().getTotalCount());
+    }
+
+    private Response send(String method, String path, String body) throws IOException {
+        return send(method, path, body == null ? null : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response send(String method, String path, byte[] body) throws IOException {
+        URL url = new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String text = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        connection.disconnect();
+        return new Response(status, text);
+    }
+
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        JsonObject json() {
+            return JsonParser.parseString(body).getAsJsonObject();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package catpoint.service;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import service.ImageServiceInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrentSecurityServiceTest {
+
+    private SecurityRepository repository;
+    private ConcurrentSecurityService securityService;
+
+    @BeforeEach
+    void init() {
+        repository = mock(SecurityRepository.class);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(repository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        securityService = new ConcurrentSecurityService(repository, mock(ImageServiceInterface.class));
+    }
+
+    @Test
+    void changeSensorActivationStatus_activateThenDeactivate_matchesSequentialRules() {
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        securityService.changeSensorActivationStatus(sensor, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        securityService.changeSensorActivationStatus(sensor, false);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        verify(repository).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        verify(repository).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @RepeatedTest(20)
+    void changeSensorActivationStatus_manySensorsConcurrently_neverLosesAlarmTransition() throws InterruptedException {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(sensors.size());
+        CountDownLatch start = new CountDownLatch(1);
+        for (Sensor sensor : sensors) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                securityService.changeSensorActivationStatus(sensor, true);
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        verify(repository, atLeastOnce()).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void noAlarmSet_pendingWithoutActiveSensors_updatesStateAndRepository() {
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        securityService.changeSensorActivationStatus(sensor, true);
+        sensor.setActive(false);
+        securityService.noAlarmSet(AlarmStatus.PENDING_ALARM, Set.of(sensor));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getState().getAlarmStatus());
+        assertEquals(AlarmStatus.ALARM, securityService.sensorAlreadyActivated(activeSensor(), true, AlarmStatus.PENDING_ALARM));
+        assertEquals(AlarmStatus.ALARM, securityService.getState().getAlarmStatus());
+        verify(repository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void setArmingStatus_disarmedWithCatInView_soundsAlarmWhenArmed() {
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.catDetected(true);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, securityService.getArmingStatus());
+    }
+
+    private static Sensor activeSensor() {
+        Sensor sensor = new Sensor("Back Door", SensorType.DOOR);
+        sensor.setActive(true);
+        return sensor;
+    }
+}
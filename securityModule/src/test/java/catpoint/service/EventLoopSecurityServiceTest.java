@@ -0,0 +1,156 @@
+package catpoint.service;
+
+import catpoint.application.StatusListener;
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.JournalSecurityRepositoryImpl;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.ImageServiceInterface;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class EventLoopSecurityServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private JournalSecurityRepositoryImpl repository;
+    private ImageServiceInterface imageService;
+    private EventLoopSecurityService securityService;
+
+    @BeforeEach
+    void init() {
+        repository = new JournalSecurityRepositoryImpl(directory);
+        imageService = mock(ImageServiceInterface.class);
+        //a tiny buffer so the producers below are forced to wait on the event thread
+        securityService = new EventLoopSecurityService(repository, imageService, 8, 4);
+    }
+
+    @AfterEach
+    void close() throws InterruptedException {
+        securityService.close();
+        repository.close();
+    }
+
+    @Test
+    void events_fromManyProducers_areAllAppliedByEventThread() throws InterruptedException {
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            boolean active = i % 2 == 0;
+            producers.execute(() -> securityService.changeSensorActivationStatus(sensor, active));
+        }
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(securityService.flush(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, securityService.getLatencyHistogram(EventLoopSecurityService.EventType.SENSOR_ACTIVATION).getTotalCount());
+        assertEquals(1, securityService.getLatencyHistogram(EventLoopSecurityService.EventType.ARMING_STATUS).getTotalCount());
+        assertTrue(securityService.getBatchCount() > 0);
+    }
+
+    @Test
+    void processImage_catInViewWhileArmed_soundsAlarmAfterFlush() throws InterruptedException {
+        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(true);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.processImage(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB));
+        assertTrue(securityService.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(1, securityService.getLatencyHistogram(EventLoopSecurityService.EventType.IMAGE_RESULT).getTotalCount());
+    }
+
+    @Test
+    void listenerMutating_onFullQueue_isAppliedOnEventThreadWithoutDeadlock() throws InterruptedException {
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        List<Thread> writers = new ArrayList<>();
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                if (status == AlarmStatus.PENDING_ALARM) {
+                    writers.add(Thread.currentThread());
+                    securityService.setAlarmStatus(AlarmStatus.ALARM);
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+
+            @Override
+            public void ArmingNotify(ArmingStatus status) {
+            }
+        });
+        securityService.changeSensorActivationStatus(sensor, true);
+        //keep the queue full while the listener runs
+        for (int i = 0; i < 64; i++) {
+            securityService.changeSensorActivationStatus(sensor, true);
+        }
+        assertTrue(securityService.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        assertEquals(1, writers.size());
+        assertEquals("catpoint-event-loop", writers.get(0).getName());
+        //PENDING_ALARM from the activation and ALARM from the listener
+        assertEquals(2, securityService.getLatencyHistogram(EventLoopSecurityService.EventType.ALARM_STATUS).getTotalCount());
+        assertEquals(1, securityService.getLatencyHistogram(EventLoopSecurityService.EventType.ADD_SENSOR).getTotalCount());
+    }
+
+    @Test
+    void close_withQueuedEvents_appliesThemBeforeStopping() throws InterruptedException {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.close();
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertThrows(IllegalStateException.class, () -> securityService.setArmingStatus(ArmingStatus.DISARMED));
+    }
+
+    @Test
+    void flush_racingWithClose_failsOrCompletes_neverWaitsOutItsTimeout() throws Exception {
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(producers.submit(() -> {
+                while (true) {
+                    try {
+                        if (!securityService.flush(5, TimeUnit.SECONDS)) {
+                            return false;
+                        }
+                    } catch (IllegalStateException e) {
+                        return true;
+                    }
+                }
+            }));
+        }
+        Thread.sleep(20);
+        securityService.close();
+
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        producers.shutdown();
+    }
+}
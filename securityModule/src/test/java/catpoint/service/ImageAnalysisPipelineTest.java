@@ -0,0 +1,104 @@
+package catpoint.service;
+
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import org.junit.jupiter.api.Test;
+import service.AsyncImageServiceInterface;
+import service.DelayedFakeImageService;
+import service.ImageServiceInterface;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ImageAnalysisPipelineTest {
+
+    private final BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+    @Test
+    void submit_beyondConcurrencyLimit_isRejected() throws Exception {
+        ImageAnalysisPipeline pipeline = new ImageAnalysisPipeline(new DelayedFakeImageService(200), 2, Duration.ofSeconds(5));
+        CompletableFuture<Boolean> first = pipeline.submit(image, 50.0f);
+        CompletableFuture<Boolean> second = pipeline.submit(image, 50.0f);
+        CompletableFuture<Boolean> third = pipeline.submit(image, 50.0f);
+
+        ExecutionException rejection = assertThrows(ExecutionException.class, third::get);
+        assertTrue(rejection.getCause() instanceof RejectedExecutionException);
+        first.get();
+        second.get();
+        assertEquals(2, pipeline.getCompletedCount());
+        assertEquals(1, pipeline.getRejectedCount());
+    }
+
+    @Test
+    void submit_detectorSlowerThanTimeout_failsWithTimeout() {
+        AsyncImageServiceInterface neverAnswers = (img, threshold) -> new CompletableFuture<>();
+        ImageAnalysisPipeline pipeline = new ImageAnalysisPipeline(neverAnswers, 1, Duration.ofMillis(50));
+
+        ExecutionException timeout = assertThrows(ExecutionException.class, () -> pipeline.submit(image, 50.0f).get());
+        assertTrue(timeout.getCause() instanceof TimeoutException);
+        assertEquals(1, pipeline.getFailedCount());
+    }
+
+    @Test
+    void processImageAsync_catFound_appliesVerdictWhenComplete() throws Exception {
+        SecurityRepository repository = mock(SecurityRepository.class);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(repository.getCatStatus()).thenReturn(true);
+        SecurityService securityService = new SecurityService(repository, new DelayedFakeImageService(10, alwaysTrue()));
+
+        assertTrue(securityService.processImageAsync(image).get());
+        verify(repository).setCatStatus(true);
+        verify(repository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    void processImageAsync_olderFrameCompletesLast_keepsNewerVerdict() throws Exception {
+        SecurityRepository repository = mock(SecurityRepository.class);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        List<CompletableFuture<Boolean>> detections = new ArrayList<>();
+        AsyncImageServiceInterface manual = (img, threshold) -> {
+            CompletableFuture<Boolean> detection = new CompletableFuture<>();
+            detections.add(detection);
+            return detection;
+        };
+        SecurityService securityService = new SecurityService(repository, mock(ImageServiceInterface.class));
+        securityService.setImagePipeline(new ImageAnalysisPipeline(manual, 2, Duration.ofSeconds(5)));
+        List<Thread> appliedOn = new ArrayList<>();
+        securityService.setVerdictExecutor(task -> {
+            appliedOn.add(Thread.currentThread());
+            task.run();
+        });
+
+        CompletableFuture<Boolean> older = securityService.processImageAsync(image);
+        CompletableFuture<Boolean> newer = securityService.processImageAsync(image);
+        detections.get(1).complete(false);
+        detections.get(0).complete(true);
+
+        assertFalse(newer.get());
+        assertTrue(older.get());
+        verify(repository).setCatStatus(false);
+        verify(repository, never()).setCatStatus(true);
+        verify(repository, never()).setAlarmStatus(AlarmStatus.ALARM);
+        assertEquals(2, appliedOn.size());
+    }
+
+    private static Random alwaysTrue() {
+        return new Random() {
+            @Override
+            public boolean nextBoolean() {
+                return true;
+            }
+        };
+    }
+}
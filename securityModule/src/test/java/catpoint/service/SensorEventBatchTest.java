@@ -0,0 +1,109 @@
+package catpoint.service;
+
+import catpoint.application.StatusListener;
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import catpoint.data.ShardedSecurityRepositoryImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import service.ImageServiceInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class SensorEventBatchTest {
+
+    private final ImageServiceInterface imageService = mock(ImageServiceInterface.class);
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5})
+    void applySensorEvents_randomBatch_matchesSequentialApplication(long seed) throws InterruptedException {
+        SecurityService sequential = armedService(new SecurityService(new ShardedSecurityRepositoryImpl(), imageService));
+        SecurityService batched = armedService(new SecurityService(new ShardedSecurityRepositoryImpl(), imageService));
+        SecurityService concurrent = armedService(new ConcurrentSecurityService(new ShardedSecurityRepositoryImpl(), imageService));
+        Random random = new Random(seed);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        List<SensorEvent> events = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            events.add(new SensorEvent(sensors.get(random.nextInt(sensors.size())), random.nextBoolean()));
+        }
+
+        for (SensorEvent event : events) {
+            sequential.changeSensorActivationStatus(copyOf(event.getSensor(), sequential), event.isActive());
+        }
+        batched.applySensorEvents(copiesOf(events, batched));
+        concurrent.applySensorEvents(copiesOf(events, concurrent));
+        try (EventLoopSecurityService eventLoop = new EventLoopSecurityService(new ShardedSecurityRepositoryImpl(), imageService)) {
+            armedService(eventLoop);
+            eventLoop.applySensorEvents(copiesOf(events, eventLoop));
+            assertTrue(eventLoop.flush(5, TimeUnit.SECONDS));
+            assertEquals(sequential.getAlarmStatus(), eventLoop.getAlarmStatus());
+        }
+
+        assertEquals(sequential.getAlarmStatus(), batched.getAlarmStatus());
+        assertEquals(sequential.getAlarmStatus(), concurrent.getAlarmStatus());
+    }
+
+    @Test
+    void applySensorEvents_persistsAndNotifiesOncePerBatch() {
+        SecurityRepository repository = mock(SecurityRepository.class);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(repository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        SecurityService securityService = new SecurityService(repository, imageService);
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor motion = new Sensor("Hallway", SensorType.MOTION);
+
+        securityService.applySensorEvents(List.of(new SensorEvent(door, true), new SensorEvent(motion, true)));
+
+        verify(repository).updateSensors(anyCollection());
+        verify(repository, never()).updateSensor(any());
+        verify(repository).setAlarmStatus(AlarmStatus.ALARM);
+        verify(listener).notify(AlarmStatus.ALARM);
+        verify(listener, never()).notify(AlarmStatus.PENDING_ALARM);
+        verify(listener).sensorsChanged(argThat(changed -> changed.containsAll(List.of(door, motion)) && changed.size() == 2));
+        verify(listener, never()).sensorStatusChanged();
+    }
+
+    private static SecurityService armedService(SecurityService securityService) {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        return securityService;
+    }
+
+    /**
+     * Each service gets its own sensor instances, matched by id, so one run can't see another's changes.
+     */
+    private static Sensor copyOf(Sensor sensor, SecurityService securityService) {
+        for (Sensor existing : securityService.getSensors()) {
+            if (existing.equals(sensor)) {
+                return existing;
+            }
+        }
+        Sensor copy = new Sensor(sensor.getName(), sensor.getSensorType());
+        copy.setSensorId(sensor.getSensorId());
+        securityService.addSensor(copy);
+        return copy;
+    }
+
+    private static List<SensorEvent> copiesOf(List<SensorEvent> events, SecurityService securityService) {
+        List<SensorEvent> copies = new ArrayList<>();
+        for (SensorEvent event : events) {
+            copies.add(new SensorEvent(copyOf(event.getSensor(), securityService), event.isActive()));
+        }
+        return copies;
+    }
+}
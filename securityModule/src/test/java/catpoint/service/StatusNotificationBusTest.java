@@ -0,0 +1,133 @@
+package catpoint.service;
+
+import catpoint.application.StatusListener;
+import catpoint.data.AlarmStatus;
+import catpoint.data.ArmingStatus;
+import catpoint.data.SecurityRepository;
+import catpoint.data.Sensor;
+import catpoint.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import service.ImageServiceInterface;
+
+import javax.swing.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StatusNotificationBusTest {
+
+    private final StatusNotificationBus bus = new StatusNotificationBus(Duration.ofHours(1));
+
+    @AfterEach
+    void close() {
+        bus.close();
+    }
+
+    @Test
+    void burstOfUpdates_withinOneFrame_isDeliveredOnceWithLatestValues() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.register(listener, Runnable::run);
+
+        for (int i = 0; i < 100; i++) {
+            bus.notify(i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM);
+            bus.sensorStatusChanged();
+        }
+        bus.flush();
+
+        verify(listener).notify(AlarmStatus.ALARM);
+        verify(listener).sensorStatusChanged();
+        verify(listener, never()).catDetected(anyBoolean());
+        assertEquals(200, bus.getReceivedCount());
+        assertEquals(1, bus.getFrameCount());
+    }
+
+    @Test
+    void sensorChanges_withinOneFrame_areDeliveredAsOneSetOfSensors() {
+        StatusListener listener = mock(StatusListener.class);
+        bus.register(listener, Runnable::run);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+
+        bus.sensorsChanged(List.of(door));
+        bus.sensorsChanged(List.of(window, door));
+        bus.flush();
+        bus.sensorsChanged(List.of(door));
+        bus.sensorStatusChanged();
+        bus.flush();
+
+        verify(listener).sensorsChanged(argThat(changed -> changed.size() == 2 && changed.containsAll(List.of(door, window))));
+        verify(listener).sensorStatusChanged();
+        assertEquals(2, bus.getFrameCount());
+    }
+
+    @Test
+    void swingListener_isCalledOnEventDispatchThread() throws Exception {
+        AtomicBoolean onEdt = new AtomicBoolean();
+        CountDownLatch called = new CountDownLatch(1);
+        bus.register(new SwingListener(onEdt, called));
+
+        bus.catDetected(true);
+        bus.flush();
+
+        assertTrue(called.await(5, TimeUnit.SECONDS));
+        assertTrue(onEdt.get());
+    }
+
+    @Test
+    void securityService_withBus_deliversOffCallerThreadAfterFrame() throws InterruptedException {
+        SecurityRepository repository = mock(SecurityRepository.class);
+        SecurityService securityService = new SecurityService(repository, mock(ImageServiceInterface.class));
+        Thread caller = Thread.currentThread();
+        AtomicBoolean offCaller = new AtomicBoolean();
+        CountDownLatch called = new CountDownLatch(1);
+        securityService.addStatusListener(new SwingListener(new AtomicBoolean(), new CountDownLatch(1)) {
+            @Override
+            public void notify(AlarmStatus status) {
+                offCaller.set(Thread.currentThread() != caller);
+                called.countDown();
+            }
+        });
+        try (StatusNotificationBus frameBus = new StatusNotificationBus(Duration.ofMillis(5))) {
+            securityService.useNotificationBus(frameBus);
+            securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            securityService.setAlarmStatus(AlarmStatus.ALARM);
+
+            assertTrue(called.await(5, TimeUnit.SECONDS));
+            assertTrue(offCaller.get());
+        }
+    }
+
+    private static class SwingListener extends JComponent implements StatusListener {
+        private final AtomicBoolean onEdt;
+        private final CountDownLatch called;
+
+        SwingListener(AtomicBoolean onEdt, CountDownLatch called) {
+            this.onEdt = onEdt;
+            this.called = called;
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            onEdt.set(SwingUtilities.isEventDispatchThread());
+            called.countDown();
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+        }
+
+        @Override
+        public void ArmingNotify(ArmingStatus status) {
+        }
+    }
+}